@@ -3,9 +3,11 @@ package com.quickbee.backend;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.data.mongodb.config.EnableMongoAuditing;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableMongoAuditing // Keep this annotation for your createdAt/updatedAt fields
+@EnableScheduling // background index rebuilds
 public class BackendApplication {
 
     public static void main(String[] args) {
@@ -1,14 +1,17 @@
 package com.quickbee.backend.controller;
 
+import com.quickbee.backend.dto.StockStripesRequest;
 import com.quickbee.backend.dto.UpdateStatusRequest;
 import com.quickbee.backend.model.Order;
 import com.quickbee.backend.service.AdminService;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -35,4 +38,18 @@ public class AdminController {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
+
+    // PUT /api/admin/products/{id}/stock-stripes  (hot-SKU mode; 0 turns it off)
+    @PutMapping("/products/{id}/stock-stripes")
+    public ResponseEntity<?> setStockStripes(@PathVariable String id,
+                                             @Valid @RequestBody StockStripesRequest request) {
+        adminService.setStockStripes(id, request.getStripes());
+        return ResponseEntity.noContent().build();
+    }
+
+    // GET /api/admin/cache-stats
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(adminService.getCacheStats());
+    }
 }
\ No newline at end of file
@@ -10,8 +10,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager; // <-- ADD THIS
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken; // <-- ADD THIS
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails; // <-- ADD THIS
-import org.springframework.security.core.userdetails.UserDetailsService; // <-- ADD THIS
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -28,9 +28,6 @@ public class AuthController {
     @Autowired
     private AuthenticationManager authenticationManager;
 
-    @Autowired
-    private UserDetailsService userDetailsService;
-
     @Autowired
     private JwtUtil jwtUtil;
     // --- END OF NEW FIELDS ---
@@ -50,9 +47,10 @@ public class AuthController {
     // --- ADD THIS NEW METHOD ---
     @PostMapping("/login")
     public ResponseEntity<?> loginUser(@RequestBody LoginRequest loginRequest) {
+        final Authentication authentication;
         try {
             // 1. Authenticate user (checks email and password)
-            authenticationManager.authenticate(
+            authentication = authenticationManager.authenticate(
                     new UsernamePasswordAuthenticationToken(
                             loginRequest.getEmail(),
                             loginRequest.getPassword()
@@ -63,9 +61,8 @@ public class AuthController {
             return ResponseEntity.status(401).body("Invalid email or password");
         }
 
-        // 2. If authentication is successful, get UserDetails
-        final UserDetails userDetails = userDetailsService
-                .loadUserByUsername(loginRequest.getEmail());
+        // 2. If authentication is successful, reuse the principal it already loaded (id + role)
+        final UserDetails userDetails = (UserDetails) authentication.getPrincipal();
 
         // 3. Generate JWT Token
         final String token = jwtUtil.generateToken(userDetails);
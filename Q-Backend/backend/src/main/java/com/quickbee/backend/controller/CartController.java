@@ -1,6 +1,7 @@
 package com.quickbee.backend.controller;
 
 import com.quickbee.backend.dto.AddItemRequest;
+import com.quickbee.backend.dto.CartBatchRequest;
 import com.quickbee.backend.dto.CartResponse;
 import com.quickbee.backend.dto.UpdateItemRequest;
 import com.quickbee.backend.service.CartService;
@@ -41,6 +42,12 @@ public class CartController {
         return ResponseEntity.ok(svc.removeItem(productId));
     }
 
+    // several add/set/remove operations as one atomic update
+    @PostMapping("/batch")
+    public ResponseEntity<CartResponse> applyBatch(@Valid @RequestBody CartBatchRequest req) {
+        return ResponseEntity.ok(svc.applyBatch(req));
+    }
+
     @DeleteMapping
     public ResponseEntity<CartResponse> clearCart() {
         return ResponseEntity.ok(svc.clearCart());
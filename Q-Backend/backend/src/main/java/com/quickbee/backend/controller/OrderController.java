@@ -1,7 +1,10 @@
 package com.quickbee.backend.controller;
 
 import com.quickbee.backend.dto.CreateOrderRequest;
+import com.quickbee.backend.dto.CursorPage;
 import com.quickbee.backend.dto.OrderResponse;
+import com.quickbee.backend.dto.OrderSummaryResponse;
+import com.quickbee.backend.service.IdempotencyService;
 import com.quickbee.backend.service.OrderService;
 import jakarta.validation.Valid;
 import org.springframework.data.domain.Page;
@@ -16,15 +19,21 @@ import org.springframework.web.bind.annotation.*;
 public class OrderController {
 
     private final OrderService svc;
+    private final IdempotencyService idempotency;
 
-    public OrderController(OrderService svc) {
+    public OrderController(OrderService svc, IdempotencyService idempotency) {
         this.svc = svc;
+        this.idempotency = idempotency;
     }
 
+    // retries with the same Idempotency-Key get the first response instead of a second order
     @PostMapping
-    public ResponseEntity<OrderResponse> create(@Valid @RequestBody CreateOrderRequest req) {
-        OrderResponse resp = svc.createOrder(req);
-        return ResponseEntity.status(HttpStatus.CREATED).body(resp);
+    public ResponseEntity<?> create(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                    @Valid @RequestBody CreateOrderRequest req) {
+        return idempotency.execute("orders", idempotencyKey, req, () -> {
+            OrderResponse resp = svc.createOrder(req);
+            return ResponseEntity.status(HttpStatus.CREATED).body(resp);
+        });
     }
 
     @GetMapping("/me")
@@ -33,6 +42,13 @@ public class OrderController {
         return svc.listMyOrders(page, size);
     }
 
+    // order history for infinite scroll: keyset cursor, summary rows only
+    @GetMapping("/me/scroll")
+    public CursorPage<OrderSummaryResponse> myOrdersScroll(@RequestParam(required=false) String cursor,
+                                                           @RequestParam(defaultValue="20") int size) {
+        return svc.scrollMyOrders(cursor, size);
+    }
+
     @GetMapping("/{id}")
     public OrderResponse getById(@PathVariable String id) {
         return svc.getOrderById(id);
@@ -1,7 +1,9 @@
 package com.quickbee.backend.controller;
 
 import com.quickbee.backend.model.User;
+import com.quickbee.backend.security.SecurityUtils;
 import com.quickbee.backend.service.AssignmentService;
+import com.quickbee.backend.service.PartnerLocationService;
 import com.quickbee.backend.service.PartnerService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -12,10 +14,13 @@ public class PartnerController {
 
     private final PartnerService partnerService;
     private final AssignmentService assignmentService;
+    private final PartnerLocationService locationService;
 
-    public PartnerController(PartnerService partnerService,AssignmentService assignmentService) {
+    public PartnerController(PartnerService partnerService,AssignmentService assignmentService,
+                             PartnerLocationService locationService) {
         this.partnerService = partnerService;
         this.assignmentService=assignmentService;
+        this.locationService = locationService;
     }
 
     @PostMapping("/apply")
@@ -56,4 +61,10 @@ public class PartnerController {
         return ResponseEntity.ok(u);
     }
 
+    // Location heartbeat of the signed-in partner, every few seconds; kept in memory and Redis, persisted in batches
+    @PostMapping("/me/heartbeat")
+    public ResponseEntity<Void> heartbeat(@RequestParam double lat, @RequestParam double lng) {
+        locationService.heartbeat(SecurityUtils.currentUserId(), lat, lng);
+        return ResponseEntity.accepted().build();
+    }
 }
@@ -4,6 +4,7 @@ import com.quickbee.backend.dto.CreatePaymentRequest;
 import com.quickbee.backend.dto.CreatePaymentResponse;
 import com.quickbee.backend.dto.VerifyPaymentRequest;
 import com.quickbee.backend.model.Order;
+import com.quickbee.backend.service.IdempotencyService;
 import com.quickbee.backend.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -16,14 +17,21 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private IdempotencyService idempotency;
+
+    // retries with the same Idempotency-Key replay the first Razorpay order instead of creating another
     @PostMapping("/create-order")
-    public ResponseEntity<?> createOrder(@RequestBody CreatePaymentRequest request) {
-        try {
-            CreatePaymentResponse response = paymentService.createRazorpayOrder(request);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.badRequest().body(e.getMessage());
-        }
+    public ResponseEntity<?> createOrder(@RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+                                         @RequestBody CreatePaymentRequest request) {
+        return idempotency.execute("payments", idempotencyKey, request, () -> {
+            try {
+                CreatePaymentResponse response = paymentService.createRazorpayOrder(request);
+                return ResponseEntity.ok(response);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(e.getMessage());
+            }
+        });
     }
 
     @PostMapping("/verify")
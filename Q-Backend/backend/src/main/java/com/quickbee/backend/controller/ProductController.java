@@ -1,15 +1,39 @@
 package com.quickbee.backend.controller;
 
+import com.quickbee.backend.dto.CursorPage;
+import com.quickbee.backend.dto.FacetedProductsResponse;
+import com.quickbee.backend.dto.ProductImportReport;
+import com.quickbee.backend.dto.ProductCardResponse;
 import com.quickbee.backend.dto.ProductRequest;
+import com.quickbee.backend.dto.SuggestionResponse;
 import com.quickbee.backend.model.Product;
+import com.quickbee.backend.service.CatalogVersion;
+import com.quickbee.backend.service.ProductImportService;
 import com.quickbee.backend.service.ProductService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/products")
@@ -18,33 +42,47 @@ public class ProductController {
     @Autowired
     private ProductService svc;
 
+    @Autowired
+    private ProductImportService importService;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Value("${catalog.http.max-age-seconds:5}")
+    private long maxAgeSeconds;
+
     @GetMapping
-    public Page<Product> list(
+    public ResponseEntity<Page<ProductCardResponse>> list(
             @RequestParam(defaultValue="0") int page,
             @RequestParam(defaultValue="10") int size,
             @RequestParam(defaultValue="name") String sortBy,
-            @RequestParam(defaultValue="ASC") String sortDir
+            @RequestParam(defaultValue="ASC") String sortDir,
+            WebRequest request
     ) {
-        return svc.getAllProducts(page, size, sortBy, sortDir);
+        return listResponse(request, () -> svc.getAllProducts(page, size, sortBy, sortDir));
     }
 
     @GetMapping("/{id}")
-    public Product getById(@PathVariable String id) {
-        return svc.getProductById(id);
+    public ResponseEntity<Product> getById(@PathVariable String id, WebRequest request) {
+        Product p = svc.getProductById(id); // served from the product cache, not the repository
+        long version = p.getVersion() == null ? 0 : p.getVersion();
+        return conditional(request, "\"p" + p.getId() + "-" + version + "\"", () -> p);
     }
 
     @GetMapping("/category/{category}")
-    public Page<Product> byCategory(@PathVariable String category,
+    public ResponseEntity<Page<ProductCardResponse>> byCategory(@PathVariable String category,
                                     @RequestParam(defaultValue="0") int page,
-                                    @RequestParam(defaultValue="10") int size) {
-        return svc.getProductsByCategory(category, page, size);
+                                    @RequestParam(defaultValue="10") int size,
+                                    WebRequest request) {
+        return listResponse(request, () -> svc.getProductsByCategory(category, page, size));
     }
 
     @GetMapping("/search")
-    public Page<Product> search(@RequestParam String q,
+    public ResponseEntity<Page<ProductCardResponse>> search(@RequestParam String q,
                                 @RequestParam(defaultValue="0") int page,
-                                @RequestParam(defaultValue="10") int size) {
-        return svc.search(q, page, size);
+                                @RequestParam(defaultValue="10") int size,
+                                WebRequest request) {
+        return listResponse(request, () -> svc.search(q, page, size));
     }
 
     // ADMIN endpoints (protect later)
@@ -55,6 +93,14 @@ public class ProductController {
         return ResponseEntity.ok(p);
     }
 
+    // bulk upsert, streamed: Content-Type application/x-ndjson (one product per line) or text/csv (with header)
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "application/jsonl", "text/csv"})
+    @PreAuthorize("hasRole('ADMIN')")
+    public ProductImportReport importProducts(@RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+                                              InputStream body) throws IOException {
+        return importService.importProducts(body, ProductImportService.formatFor(contentType));
+    }
+
     @PutMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
     public Product update(@PathVariable String id, @Valid @RequestBody ProductRequest req) {
@@ -68,12 +114,97 @@ public class ProductController {
         return ResponseEntity.noContent().build();
     }
     @GetMapping("/filter")
-    public Page<Product> filter(@RequestParam(required=false) Double minPrice,
+    public ResponseEntity<Page<ProductCardResponse>> filter(@RequestParam(required=false) Double minPrice,
                                 @RequestParam(required=false) Double maxPrice,
                                 @RequestParam(required=false) String category,
                                 @RequestParam(defaultValue="0") int page,
-                                @RequestParam(defaultValue="10") int size) {
-        return svc.filter(minPrice, maxPrice, category, page, size);
+                                @RequestParam(defaultValue="10") int size,
+                                WebRequest request) {
+        return listResponse(request, () -> svc.filter(minPrice, maxPrice, category, page, size));
+    }
+
+    // results + category / price-bucket / stock counts for the filter sidebar
+    @GetMapping("/facets")
+    public ResponseEntity<FacetedProductsResponse> facets(@RequestParam(required=false) Set<String> category,
+                                          @RequestParam(required=false) Double minPrice,
+                                          @RequestParam(required=false) Double maxPrice,
+                                          @RequestParam(required=false) Boolean inStock,
+                                          @RequestParam(defaultValue="0") int page,
+                                          @RequestParam(defaultValue="10") int size,
+                                          WebRequest request) {
+        return listResponse(request, () -> svc.facetedFilter(category, minPrice, maxPrice, inStock, page, size));
+    }
+
+    // typeahead: top suggestions for a name/category prefix
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionResponse>> suggest(@RequestParam String q,
+                                                            @RequestParam(defaultValue="8") int limit,
+                                                            WebRequest request) {
+        // the suggest snapshot swaps on its own schedule (and on sales), so it has its own version
+        return listResponse(request, "s" + svc.suggestVersion(), () -> svc.suggest(q, limit));
+    }
+
+    // --- Cursor (keyset) variants for infinite scroll: no skip, no count ---
+
+    @GetMapping("/scroll")
+    public ResponseEntity<CursorPage<ProductCardResponse>> scroll(@RequestParam(required=false) String cursor,
+                                      @RequestParam(defaultValue="20") int size,
+                                      @RequestParam(defaultValue="name") String sortBy,
+                                      @RequestParam(defaultValue="ASC") String sortDir,
+                                      WebRequest request) {
+        return listResponse(request, () -> svc.scrollProducts(cursor, size, sortBy, sortDir));
+    }
+
+    @GetMapping("/category/{category}/scroll")
+    public ResponseEntity<CursorPage<ProductCardResponse>> scrollByCategory(@PathVariable String category,
+                                                @RequestParam(required=false) String cursor,
+                                                @RequestParam(defaultValue="20") int size,
+                                                WebRequest request) {
+        return listResponse(request, () -> svc.scrollByCategory(category, cursor, size));
+    }
+
+    @GetMapping("/filter/scroll")
+    public ResponseEntity<CursorPage<ProductCardResponse>> scrollFilter(@RequestParam(required=false) Double minPrice,
+                                            @RequestParam(required=false) Double maxPrice,
+                                            @RequestParam(required=false) String category,
+                                            @RequestParam(required=false) String cursor,
+                                            @RequestParam(defaultValue="20") int size,
+                                            WebRequest request) {
+        return listResponse(request, () -> svc.scrollFilter(minPrice, maxPrice, category, cursor, size));
+    }
+
+    @GetMapping("/search/scroll")
+    public ResponseEntity<CursorPage<ProductCardResponse>> scrollSearch(@RequestParam String q,
+                                            @RequestParam(required=false) String cursor,
+                                            @RequestParam(defaultValue="20") int size,
+                                            WebRequest request) {
+        return listResponse(request, () -> svc.scrollSearch(q, cursor, size));
+    }
+
+    // --- Conditional GET ---
+
+    // list ETag = catalog change counter + path + query params; read before the query runs
+    private <T> ResponseEntity<T> listResponse(WebRequest request, Supplier<T> body) {
+        return listResponse(request, "c" + catalogVersion.token(), body);
     }
 
+    private <T> ResponseEntity<T> listResponse(WebRequest request, String version, Supplier<T> body) {
+        StringBuilder key = new StringBuilder(request.getDescription(false));
+        for (Map.Entry<String, String[]> e : new TreeMap<>(request.getParameterMap()).entrySet()) {
+            String[] values = e.getValue().clone();
+            Arrays.sort(values);
+            key.append('&').append(e.getKey()).append('=').append(String.join(",", values));
+        }
+        String hash = DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8));
+        return conditional(request, "\"" + version + "-" + hash + "\"", body);
+    }
+
+    // 304 without building the body when If-None-Match matches
+    private <T> ResponseEntity<T> conditional(WebRequest request, String etag, Supplier<T> body) {
+        CacheControl cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic().mustRevalidate();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().eTag(etag).cacheControl(cacheControl).body(body.get());
+    }
 }
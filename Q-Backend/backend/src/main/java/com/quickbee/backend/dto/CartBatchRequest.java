@@ -0,0 +1,42 @@
+package com.quickbee.backend.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+// Several cart changes applied in order as one atomic update
+@Data
+public class CartBatchRequest {
+
+    @NotEmpty
+    @Size(max = 100)
+    private List<@Valid Op> ops;
+
+    public enum Type { ADD, SET, REMOVE }
+
+    @Data
+    public static class Op {
+        @NotNull
+        private Type type;
+
+        @NotBlank
+        private String productId;
+
+        @Min(0) // ADD: qty to add (at least 1), SET: new qty (0 removes), REMOVE: ignored
+        private int qty;
+
+        @JsonIgnore
+        @AssertTrue(message = "ADD needs qty of at least 1")
+        public boolean isQtyValidForType() {
+            return type != Type.ADD || qty >= 1;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package com.quickbee.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Keyset-paginated slice: no total count, pass nextCursor back to get the following slice
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+    private List<T> items;
+    private String nextCursor; // null on the last slice
+    private boolean hasNext;
+}
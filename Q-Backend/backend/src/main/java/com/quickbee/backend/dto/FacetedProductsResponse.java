@@ -0,0 +1,37 @@
+package com.quickbee.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Page;
+
+import java.util.List;
+
+// Filtered results plus the facet counts the filter sidebar needs, in one response
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetedProductsResponse {
+    private Page<ProductCardResponse> results;
+    private List<CategoryCount> categories;   // ignores the category filter
+    private List<PriceBucket> priceBuckets;   // ignores the price filter
+    private long inStock;                     // ignores the inStock filter
+    private long outOfStock;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class CategoryCount {
+        private String category;
+        private long count;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PriceBucket {
+        private Double from; // inclusive
+        private Double to;   // exclusive, null for the open-ended last bucket
+        private long count;
+    }
+}
@@ -0,0 +1,21 @@
+package com.quickbee.backend.dto;
+
+import com.quickbee.backend.model.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+// Order history row; items and address are only served by GET /api/orders/{id}
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryResponse {
+    private String id;
+    private OrderStatus status;
+    private Double total;
+    private int itemCount;        // units across all lines
+    private String thumbnailUrl;  // image of the first item
+    private Instant createdAt;
+}
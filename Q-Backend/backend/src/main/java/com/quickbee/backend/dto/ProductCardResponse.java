@@ -0,0 +1,18 @@
+package com.quickbee.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Compact grid/list view of a product; the full entity is only served by GET /api/products/{id}
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductCardResponse {
+    private String id;
+    private String name;
+    private Double price;
+    private String imageUrl;
+    private String category;
+    private boolean inStock;
+}
@@ -0,0 +1,31 @@
+package com.quickbee.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Summary returned by the bulk catalog import
+@Data
+@NoArgsConstructor
+public class ProductImportReport {
+    private long rowsRead;
+    private long inserted;
+    private long updated;
+    private long failed;
+    private List<RowError> errors = new ArrayList<>();
+    private boolean errorsTruncated; // only the first catalog.import.max-reported-errors are listed
+    private long batches;
+    private long elapsedMs;
+    private double rowsPerSecond;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line; // 1-based line in the uploaded file
+        private String message;
+    }
+}
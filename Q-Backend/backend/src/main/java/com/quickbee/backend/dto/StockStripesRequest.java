@@ -0,0 +1,13 @@
+package com.quickbee.backend.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+// Admin toggle of hot-SKU mode: number of stock stripes, 0 turns it off
+@Data
+public class StockStripesRequest {
+    @Min(0)
+    @Max(64)
+    private int stripes;
+}
@@ -0,0 +1,17 @@
+package com.quickbee.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One typeahead suggestion: a product (productId set) or a category
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionResponse {
+    public enum Type { PRODUCT, CATEGORY }
+
+    private String text;
+    private Type type;
+    private String productId; // null for categories
+}
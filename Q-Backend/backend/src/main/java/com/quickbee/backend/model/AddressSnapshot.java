@@ -14,4 +14,6 @@ public class AddressSnapshot {
     private String city;
     private String state;
     private String pincode;
+    private Double lat;     // delivery point for nearest-partner dispatch, if the address has one
+    private Double lng;
 }
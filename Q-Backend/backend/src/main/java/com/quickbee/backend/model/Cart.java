@@ -30,6 +30,8 @@ public class Cart {
     private Double subtotal = 0.0;   // computed server-side
     private Integer totalItems = 0;  // computed server-side
 
+    private Long version;            // bumped by every mutation; batch updates and the Redis write-behind compare it
+
     @CreatedDate
     private Instant createdAt;
 
@@ -3,6 +3,7 @@ package com.quickbee.backend.model;
 import com.quickbee.backend.model.enums.AssignmentStatus;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.Instant;
@@ -14,6 +15,7 @@ import java.time.Instant;
 public class DeliveryAssignment {
     @Id
     private String id;
+    @Indexed
     private String orderId;
     private String partnerId;
     private AssignmentStatus status;
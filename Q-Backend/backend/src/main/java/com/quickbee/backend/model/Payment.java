@@ -32,6 +32,7 @@ public class Payment {
     private String razorpayOrderId;
     private String razorpayPaymentId;
     private String razorpaySignature;
+    private String razorpayRefundId; // set once a REFUND_PENDING payment is refunded
 
     @CreatedDate
     private Instant createdAt;
@@ -1,6 +1,9 @@
 package com.quickbee.backend.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 import org.springframework.data.annotation.CreatedDate;
@@ -8,12 +11,21 @@ import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.Id;
 
 import java.time.Instant;
+import java.util.List;
 
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "products")
+// keyset pagination: every cursor listing sorts by (key, _id) and needs a matching index
+@CompoundIndexes({
+        @CompoundIndex(name = "name_id", def = "{'name': 1, '_id': 1}"),
+        @CompoundIndex(name = "price_id", def = "{'price': 1, '_id': 1}"),
+        @CompoundIndex(name = "createdAt_id", def = "{'createdAt': 1, '_id': 1}"),
+        @CompoundIndex(name = "category_name_id", def = "{'category': 1, 'name': 1, '_id': 1}"),
+        @CompoundIndex(name = "category_price_id", def = "{'category': 1, 'price': 1, '_id': 1}")
+})
 public class Product {
     @Id
     private String id;
@@ -29,12 +41,34 @@ public class Product {
 
     private Double price;
 
-    private Integer stockQuantity;
+    private Integer stockQuantity; // available to sell: stock held for unpaid orders is already taken off
+
+    private Integer reservedQuantity; // held for orders awaiting payment (see StockDeductionService)
+
+    // hot-SKU mode: stock lives in this many stock_stripes documents and the two fields above are
+    // folded from them for display (see StripedStockService); null = off
+    @Indexed(sparse = true)
+    private Integer stockStripes;
 
     @Indexed
     private String category;
 
     private String imageUrl; // link to S3 or CDN
 
+    // bumped on every write, stock changes included; drives the product ETag.
+    // Deliberately not @Version: documents created before this field would then be treated as new.
+    private Long version;
+
+    // ids of stock journal entries whose deduction is applied but not yet settled (see StockDeductionService)
+    @JsonIgnore
+    private List<String> stockHolds;
+
+    // hot-SKU mode only: qty still held by stockHolds from before the product went hot, and qty those
+    // holds gave back since, waiting to be moved onto a stripe (see StripedStockService#reconcile)
+    @JsonIgnore
+    private Integer heldOffStripes;
+    @JsonIgnore
+    private Integer stripeCredit;
+
     // constructors, getters, setters
 }
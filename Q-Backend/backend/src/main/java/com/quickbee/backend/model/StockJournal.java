@@ -0,0 +1,48 @@
+package com.quickbee.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.Instant;
+import java.util.List;
+
+// Write-ahead record of one checkout's stock deduction, which then serves as the order's reservation
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document("stock_journal")
+@CompoundIndexes({
+        @CompoundIndex(name = "state_createdAt", def = "{'state': 1, 'createdAt': 1}"),
+        @CompoundIndex(name = "state_expiresAt", def = "{'state': 1, 'expiresAt': 1}")
+})
+public class StockJournal {
+    @Id
+    private String id;
+
+    @Indexed
+    private String orderId;     // pre-assigned id of the order the stock is for
+    private List<Line> items;
+    private State state;
+
+    private Instant expiresAt;  // RESERVED: stock goes back unless the payment is verified by then
+
+    private Instant createdAt;
+    private Instant updatedAt;
+
+    // PENDING -> RESERVED (order saved) -> COMMITTED (paid) | RELEASING -> ROLLED_BACK (expired/failed)
+    public enum State { PENDING, RESERVED, COMMITTED, RELEASING, ROLLED_BACK }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Line {
+        private String productId;
+        private int qty;
+    }
+}
@@ -0,0 +1,30 @@
+package com.quickbee.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.List;
+import java.util.Map;
+
+// One slice of a hot product's stock; checkouts on different stripes never contend on the same document
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document("stock_stripes")
+public class StockStripe {
+    @Id
+    private String id;          // "<productId>#<stripe>"
+
+    @Indexed
+    private String productId;
+    private int stripe;
+
+    private int qty;            // available to sell from this stripe
+    private int reserved;       // held for orders awaiting payment
+    private List<String> holds; // stock journal ids holding qty here
+    private Map<String, Integer> held; // journal id -> qty it holds here (one line may span stripes)
+}
@@ -2,6 +2,9 @@ package com.quickbee.backend.model.enums;
 
 public enum PaymentStatus {
     PENDING,
+    VERIFYING, // claimed by a verify call; taken over if it stays claimed past payments.verify-claim-seconds
     PAID,
-    FAILED
+    FAILED,
+    REFUND_PENDING, // captured, but the order could not be fulfilled; refund not issued yet
+    REFUNDED
 }
\ No newline at end of file
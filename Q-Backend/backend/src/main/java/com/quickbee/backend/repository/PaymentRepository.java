@@ -1,8 +1,10 @@
 package com.quickbee.backend.repository;
 
 import com.quickbee.backend.model.Payment;
+import com.quickbee.backend.model.enums.PaymentStatus;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -10,4 +12,6 @@ public interface PaymentRepository extends MongoRepository<Payment, String> {
 
     // We'll need this to verify the payment
     Optional<Payment> findByRazorpayOrderId(String razorpayOrderId);
+
+    List<Payment> findByStatus(PaymentStatus status);
 }
\ No newline at end of file
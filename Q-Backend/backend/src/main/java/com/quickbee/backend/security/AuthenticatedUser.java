@@ -0,0 +1,66 @@
+package com.quickbee.backend.security;
+
+import com.quickbee.backend.model.User;
+import com.quickbee.backend.model.enums.AccountStatus;
+import com.quickbee.backend.model.enums.Role;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal stored in the SecurityContext for every authenticated request.
+ * Carries the DB id and role so services never need to resolve the user by email.
+ * The password is only populated on the login path (DaoAuthenticationProvider needs it).
+ */
+@Getter
+public class AuthenticatedUser implements UserDetails {
+
+    private final String id;
+    private final String email;
+    private final String password;
+    private final Role role;
+    private final AccountStatus status;
+
+    public AuthenticatedUser(String id, String email, String password, Role role, AccountStatus status) {
+        this.id = id;
+        this.email = email;
+        this.password = password;
+        this.role = role == null ? Role.USER : role;
+        this.status = status == null ? AccountStatus.ACTIVE : status;
+    }
+
+    public static AuthenticatedUser from(User user) {
+        return new AuthenticatedUser(user.getId(), user.getEmail(), user.getPassword(), user.getRole(), user.getStatus());
+    }
+
+    // copy of this principal with a fresh role/status (used when revalidating token claims)
+    public AuthenticatedUser withState(Role role, AccountStatus status) {
+        return new AuthenticatedUser(id, email, null, role, status);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        // Convert our Role (e.g., "ROLE_USER") into a Spring Security Authority
+        return List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+
+    @Override
+    public String getUsername() {
+        // We use email as the "username"
+        return email;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return status != AccountStatus.SUSPENDED;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return status == AccountStatus.ACTIVE;
+    }
+}
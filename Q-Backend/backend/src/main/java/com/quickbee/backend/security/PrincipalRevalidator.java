@@ -0,0 +1,64 @@
+package com.quickbee.backend.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.quickbee.backend.model.User;
+import com.quickbee.backend.model.enums.AccountStatus;
+import com.quickbee.backend.model.enums.Role;
+import com.quickbee.backend.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Token claims (role) are trusted for at most {@code jwt.claims.revalidate-seconds}.
+ * After that window the user's role/status is re-read once from Mongo, so role changes
+ * and suspensions apply quickly without a users lookup on every request.
+ */
+@Component
+public class PrincipalRevalidator {
+
+    private static final int MAX_TRACKED_USERS = 100_000;
+
+    private final UserRepository userRepository;
+
+    // userId -> role/status as last read; an entry expires when its claims are due for a re-check
+    private final Cache<String, CheckedState> checked;
+
+    public PrincipalRevalidator(UserRepository userRepository,
+                                @Value("${jwt.claims.revalidate-seconds:60}") long revalidateSeconds) {
+        this.userRepository = userRepository;
+        this.checked = Caffeine.newBuilder()
+                .maximumSize(MAX_TRACKED_USERS)
+                .expireAfterWrite(Duration.ofSeconds(revalidateSeconds))
+                .build();
+    }
+
+    /**
+     * Returns the principal with its current role/status, or empty if the user no longer exists.
+     */
+    public Optional<AuthenticatedUser> revalidate(AuthenticatedUser fromToken) {
+        CheckedState state = checked.getIfPresent(fromToken.getId());
+
+        if (state == null) {
+            Optional<User> user = userRepository.findById(fromToken.getId());
+            if (user.isEmpty()) return Optional.empty();
+            state = new CheckedState(user.get().getRole(), user.get().getStatus());
+            checked.put(fromToken.getId(), state);
+        }
+
+        if (state.role() == fromToken.getRole() && state.status() == fromToken.getStatus()) {
+            return Optional.of(fromToken);
+        }
+        return Optional.of(fromToken.withState(state.role(), state.status()));
+    }
+
+    /** Forces the next request of this user to re-read role/status from Mongo. */
+    public void invalidate(String userId) {
+        if (userId != null) checked.invalidate(userId);
+    }
+
+    private record CheckedState(Role role, AccountStatus status) {}
+}
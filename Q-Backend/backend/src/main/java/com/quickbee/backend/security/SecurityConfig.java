@@ -57,6 +57,7 @@ public class SecurityConfig {
                         .requestMatchers(HttpMethod.DELETE,"/api/products/**").hasRole("ADMIN")
                         .requestMatchers("/api/cart/**").hasAnyRole("USER","ADMIN")
                         .requestMatchers("/api/orders/**").hasAnyRole("USER","ADMIN")
+                        .requestMatchers(HttpMethod.POST, "/api/partners/me/heartbeat").hasRole("DELIVERY_PARTNER")
 
                         // anything else needs auth
                         .anyRequest().authenticated()
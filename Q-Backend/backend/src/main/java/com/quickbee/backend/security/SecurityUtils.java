@@ -0,0 +1,31 @@
+package com.quickbee.backend.security;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Shared accessors for the current request's {@link AuthenticatedUser}.
+ * The principal is built from verified JWT claims, so these never hit Mongo.
+ */
+public final class SecurityUtils {
+
+    private SecurityUtils() {}
+
+    public static AuthenticatedUser currentUser() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null || !(auth.getPrincipal() instanceof AuthenticatedUser user)) {
+            throw new IllegalStateException("Unauthenticated");
+        }
+        return user;
+    }
+
+    public static String currentUserId() {
+        return currentUser().getId();
+    }
+
+    public static boolean isCurrentUserAdmin() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) return false;
+        return auth.getAuthorities().stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
+    }
+}
@@ -0,0 +1,70 @@
+package com.quickbee.backend.security;
+
+import com.quickbee.backend.model.User;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Evicts a user's cached auth state (UserDetails cache + claim revalidation) on every node.
+ * Call {@link #userChanged(User)} after any write that changes role or account/partner status.
+ */
+@Component
+public class UserCacheInvalidator implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(UserCacheInvalidator.class);
+    public static final String CHANNEL = "auth:user-invalidate";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final UserDetailsServiceImpl userDetailsService;
+    private final PrincipalRevalidator principalRevalidator;
+
+    public UserCacheInvalidator(StringRedisTemplate redisTemplate,
+                                RedisMessageListenerContainer listenerContainer,
+                                UserDetailsServiceImpl userDetailsService,
+                                PrincipalRevalidator principalRevalidator) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.userDetailsService = userDetailsService;
+        this.principalRevalidator = principalRevalidator;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    public void userChanged(User user) {
+        // evict locally first so this node never serves stale state, then fan out
+        evictLocal(user.getId(), user.getEmail());
+        try {
+            redisTemplate.convertAndSend(CHANNEL, user.getId() + ":" + user.getEmail());
+        } catch (Exception e) {
+            // other nodes fall back to the cache TTL
+            log.error("Failed to publish user invalidation for {}: {}", user.getId(), e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // payload is "<userId>:<email>" (ObjectIds never contain ':')
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = body.indexOf(':');
+        if (sep < 0) return;
+        evictLocal(body.substring(0, sep), body.substring(sep + 1));
+    }
+
+    private void evictLocal(String userId, String email) {
+        userDetailsService.evict(email);
+        principalRevalidator.invalidate(userId);
+    }
+}
@@ -1,17 +1,19 @@
 package com.quickbee.backend.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.quickbee.backend.model.User;
 import com.quickbee.backend.repository.UserRepository;
+import com.quickbee.backend.util.CacheMetrics;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.Collection;
-import java.util.List;
+import java.time.Duration;
+import java.util.Map;
 
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
@@ -19,21 +21,38 @@ public class UserDetailsServiceImpl implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    // email -> principal; evicted by UserCacheInvalidator whenever role/status is written
+    private final Cache<String, AuthenticatedUser> cache;
+
+    public UserDetailsServiceImpl(@Value("${auth.user-cache.max-size:10000}") long maxSize,
+                                  @Value("${auth.user-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+    }
+
     @Override
     public UserDetails loadUserByUsername(String email) throws UsernameNotFoundException {
-        // Spring Security calls this method. We use email as the "username"
+        // Spring Security calls this method. We use email as the "username".
+        // Misses throw, so unknown emails are never cached.
+        return cache.get(email, this::loadFromDb);
+    }
+
+    public void evict(String email) {
+        if (email != null) cache.invalidate(email);
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return CacheMetrics.snapshot(cache);
+    }
+
+    private AuthenticatedUser loadFromDb(String email) {
         User user = userRepository.findByEmail(email)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + email));
 
-        // Convert our Role (e.g., "ROLE_USER") into a Spring Security Authority
-        String roleName = "ROLE_" + user.getRole().name();
-        Collection<? extends GrantedAuthority> authorities =
-                List.of(new SimpleGrantedAuthority(roleName));
-
-        return new org.springframework.security.core.userdetails.User(
-                user.getEmail(),
-                user.getPassword(),
-                authorities
-        );
+        // Our principal carries id + role so the JWT can be issued without another lookup
+        return AuthenticatedUser.from(user);
     }
-}
\ No newline at end of file
+}
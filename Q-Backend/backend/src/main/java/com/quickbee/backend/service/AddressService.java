@@ -4,9 +4,8 @@ import com.quickbee.backend.model.Address;
 import com.quickbee.backend.model.User;
 import com.quickbee.backend.repository.AddressRepository;
 import com.quickbee.backend.repository.UserRepository;
+import com.quickbee.backend.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional; // Important!
 
@@ -21,29 +20,30 @@ public class AddressService {
     @Autowired
     private UserRepository userRepository;
 
-    // Helper method to get the currently authenticated user
-    private User getAuthenticatedUser() {
-        Object principal = SecurityContextHolder.getContext().getAuthentication().getPrincipal();
-        String userEmail = ((UserDetails) principal).getUsername();
+    // Helper method to get the currently authenticated user's id (from JWT claims, no DB lookup)
+    private String getAuthenticatedUserId() {
+        return SecurityUtils.currentUserId();
+    }
 
-        return userRepository.findByEmail(userEmail)
+    // Only the write paths that touch the user's address list need the full document
+    private User getAuthenticatedUser() {
+        return userRepository.findById(getAuthenticatedUserId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
     }
 
     // --- CRUD Operations ---
 
     public List<Address> getMyAddresses() {
-        User user = getAuthenticatedUser();
-        return addressRepository.findByUserId(user.getId());
+        return addressRepository.findByUserId(getAuthenticatedUserId());
     }
 
     public Address getAddressById(String addressId) {
-        User user = getAuthenticatedUser();
+        String userId = getAuthenticatedUserId();
         Address address = addressRepository.findById(addressId)
                 .orElseThrow(() -> new RuntimeException("Address not found"));
 
         // Ownership Check
-        if (!address.getUserId().equals(user.getId())) {
+        if (!address.getUserId().equals(userId)) {
             throw new SecurityException("Access Denied: You do not own this address");
         }
         return address;
@@ -67,8 +67,6 @@ public class AddressService {
     }
 
     public Address updateAddress(String addressId, Address addressDetails) {
-        User user = getAuthenticatedUser();
-
         // 1. Get the address and verify ownership
         Address existingAddress = getAddressById(addressId); // This already checks ownership
 
@@ -3,9 +3,14 @@ package com.quickbee.backend.service;
 import com.quickbee.backend.model.Order;
 import com.quickbee.backend.model.enums.OrderStatus;
 import com.quickbee.backend.repository.OrderRepository;
+import com.quickbee.backend.security.UserDetailsServiceImpl;
+import com.quickbee.backend.util.JwtUtil;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class AdminService {
@@ -13,6 +18,39 @@ public class AdminService {
     @Autowired
     private OrderRepository orderRepository;
 
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private StockDeductionService stockDeduction;
+
+    @Autowired
+    private StripedStockService stripedStock;
+
+    @Autowired
+    private IdempotencyService idempotency;
+
+    @Autowired
+    private DelayedJobScheduler delayedJobs;
+
+    @Autowired
+    private PartnerGeoIndex partnerGeoIndex;
+
+    @Autowired
+    private PartnerLocationService partnerLocations;
+
+    @Autowired
+    private ObjectProvider<BatchDispatchService> batchDispatch; // only with dispatch.mode=batch
+
     public List<Order> getAllOrders() {
         return orderRepository.findAll();
     }
@@ -22,6 +60,29 @@ public class AdminService {
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
         order.setStatus(newStatus);
-        return orderRepository.save(order);
+        Order saved = orderRepository.save(order);
+        if (newStatus == OrderStatus.CANCELLED) stockDeduction.release(orderId); // no-op unless still reserved
+        return saved;
+    }
+
+    // hot-SKU mode: split the product's stock over this many stripes, 0 turns it off
+    public void setStockStripes(String productId, int stripes) {
+        stripedStock.setStripes(productId, stripes);
+    }
+
+    // hit/miss/eviction counters of the in-process caches
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jwt", jwtUtil.getTokenCacheStats());
+        stats.put("userDetails", userDetailsService.getCacheStats());
+        stats.put("products", productCache.getStats());
+        stats.put("cartStore", cartStore.getStats());
+        stats.put("stockStripes", stripedStock.getStats());
+        stats.put("idempotency", idempotency.getStats());
+        stats.put("delayedJobs", delayedJobs.getStats());
+        stats.put("partnerGeo", partnerGeoIndex.getStats());
+        stats.put("partnerLocations", partnerLocations.getStats());
+        batchDispatch.ifAvailable(b -> stats.put("batchDispatch", b.getStats()));
+        return stats;
     }
 }
\ No newline at end of file
@@ -1,11 +1,14 @@
 package com.quickbee.backend.service;
 
+import com.quickbee.backend.model.AddressSnapshot;
 import com.quickbee.backend.model.DeliveryAssignment;
 import com.quickbee.backend.model.Order;
+import com.quickbee.backend.model.User;
 import com.quickbee.backend.model.enums.AssignmentStatus;
 import com.quickbee.backend.model.enums.OrderStatus;
 import com.quickbee.backend.repository.DeliveryAssignmentRepository;
 import com.quickbee.backend.repository.OrderRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -13,9 +16,12 @@ import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.*;
+import java.util.Set;
 
 @Service
 public class AssignmentService {
@@ -31,18 +37,39 @@ public class AssignmentService {
     private final long pickupTimeoutSeconds = 300;      // partner must pick up within 5min (300s)
     private final long deliveryWindowSeconds = 1200;    // deliver within 20min (1200s) - configurable
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+    // timeouts are durable delayed jobs (Redis), so they survive restarts and run once across nodes;
+    // each is cancelled as soon as the partner moves on, so dead deadlines don't pile up
+    private static final String ACCEPTANCE_TIMEOUT = "assignment-acceptance";
+    private static final String PICKUP_TIMEOUT = "assignment-pickup";
+    private static final String DELIVERY_TIMEOUT = "assignment-delivery";
+
+    private final DelayedJobScheduler scheduler;
+    private final PartnerGeoIndex geoIndex;
+    private final int dispatchCandidates;
+    private final boolean batchMode; // BatchDispatchService matches queued orders and partners every tick
+    private static final int MAX_DISPATCH_ROUNDS = 3; // candidate lists tried before leaving the order queued
 
     public AssignmentService(DeliveryQueueService queueService,
                              MongoTemplate mongoTemplate,
                              OrderRepository orderRepository,
                              DeliveryAssignmentRepository assignmentRepository,
-                             UserService userService) {
+                             UserService userService,
+                             DelayedJobScheduler scheduler,
+                             PartnerGeoIndex geoIndex,
+                             @Value("${dispatch.candidates:5}") int dispatchCandidates,
+                             @Value("${dispatch.mode:greedy}") String dispatchMode) {
         this.queueService = queueService;
         this.mongoTemplate = mongoTemplate;
         this.orderRepository = orderRepository;
         this.assignmentRepository = assignmentRepository;
         this.userService = userService;
+        this.scheduler = scheduler;
+        this.geoIndex = geoIndex;
+        this.dispatchCandidates = dispatchCandidates;
+        this.batchMode = "batch".equalsIgnoreCase(dispatchMode);
+        scheduler.register(ACCEPTANCE_TIMEOUT, this::handleAcceptanceTimeout);
+        scheduler.register(PICKUP_TIMEOUT, this::handlePickupTimeout);
+        scheduler.register(DELIVERY_TIMEOUT, this::handleDeliveryTimeout);
     }
 
     /**
@@ -50,10 +77,75 @@ public class AssignmentService {
      * Returns true if assigned.
      */
     public boolean tryAssignToPartner(String partnerId) {
+        if (batchMode) return false;
         String orderId = queueService.popOldestOrder();
         if (orderId == null) return false;
 
-        // Atomically set assignedPartnerId and status = ASSIGNED only if current status is CONFIRMED and not assigned
+        if (!claimOrder(orderId, partnerId)) {
+            // The order is no longer available — push back and return false
+            queueService.enqueueOrderFront(orderId);
+            return false;
+        }
+        // mark partner busy (important when capacity == 1)
+        userService.markPartnerBusy(partnerId);
+        startAssignment(orderId, partnerId);
+        return true;
+    }
+
+    /**
+     * Called when an order is confirmed: offers it to the nearest available partners
+     * ({@link PartnerGeoIndex}, expanding rings around the delivery address). Each candidate is
+     * claimed with a conditional update, so concurrent dispatches never share a partner. Orders
+     * without coordinates fall back to the first available partner. Returns false if nobody could
+     * take it; the order stays in the delivery queue. In batch mode ({@code dispatch.mode=batch})
+     * this and {@link #tryAssignToPartner} do nothing and {@link BatchDispatchService} matches instead.
+     */
+    public boolean dispatch(Order order) {
+        if (batchMode) return false;
+        AddressSnapshot to = order.getAddress();
+        if (to == null || to.getLat() == null || to.getLng() == null) return dispatchToAnyPartner();
+
+        Set<String> tried = new HashSet<>();
+        for (int round = 0; round < MAX_DISPATCH_ROUNDS; round++) {
+            List<String> nearest = geoIndex.nearest(to.getLat(), to.getLng(), dispatchCandidates, tried);
+            if (nearest.isEmpty()) return false;
+            for (String partnerId : nearest) {
+                tried.add(partnerId);
+                if (!userService.claimAvailablePartner(partnerId)) continue; // taken meanwhile
+                if (claimOrder(order.getId(), partnerId)) {
+                    startAssignment(order.getId(), partnerId);
+                    return true;
+                }
+                userService.freePartner(partnerId); // the order was assigned elsewhere
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Commits one pair chosen by batch dispatch: claims the partner, then the order (both conditional),
+     * and starts the assignment. Returns false if either was taken meanwhile.
+     */
+    public boolean assignPair(String orderId, String partnerId) {
+        if (!userService.claimAvailablePartner(partnerId)) return false;
+        if (!claimOrder(orderId, partnerId)) {
+            userService.freePartner(partnerId);
+            return false;
+        }
+        startAssignment(orderId, partnerId);
+        return true;
+    }
+
+    private boolean dispatchToAnyPartner() {
+        for (User partner : userService.findAvailablePartners()) {
+            if (tryAssignToPartner(partner.getId())) return true;
+        }
+        return false;
+    }
+
+    // Atomically set assignedPartnerId and status = ASSIGNED only if current status is CONFIRMED and not assigned
+    private boolean claimOrder(String orderId, String partnerId) {
         Query query = new Query(Criteria.where("_id").is(orderId)
                 .and("status").is(OrderStatus.CONFIRMED)
                 .and("assignedPartnerId").is(null));
@@ -64,14 +156,10 @@ public class AssignmentService {
                 .set("updatedAt", Instant.now());
 
         FindAndModifyOptions options = FindAndModifyOptions.options().returnNew(true);
-        Order updated = mongoTemplate.findAndModify(query, update, options, Order.class);
-
-        if (updated == null) {
-            // The order is no longer available — push back and return false
-            queueService.enqueueOrderFront(orderId);
-            return false;
-        }
+        return mongoTemplate.findAndModify(query, update, options, Order.class) != null;
+    }
 
+    private void startAssignment(String orderId, String partnerId) {
         // create assignment record
         DeliveryAssignment assignment = new DeliveryAssignment();
         assignment.setOrderId(orderId);
@@ -80,8 +168,6 @@ public class AssignmentService {
         assignment.setAssignedAt(Instant.now());
         assignment.setAttemptCount(0);
         assignmentRepository.save(assignment);
-        // mark partner busy (important when capacity == 1)
-        userService.markPartnerBusy(partnerId);
 
 // remove any remaining occurrences of this order in the queue (safety)
         queueService.removeOrderFromQueue(orderId);
@@ -90,8 +176,7 @@ public class AssignmentService {
         userService.notifyPartnerNewAssignment(partnerId, assignment);
 
 // schedule acceptance timeout
-        scheduler.schedule(() -> handleAcceptanceTimeout(assignment.getId()), acceptanceTimeoutSeconds, TimeUnit.SECONDS);
-        return true;
+        scheduler.schedule(ACCEPTANCE_TIMEOUT, assignment.getId(), Duration.ofSeconds(acceptanceTimeoutSeconds));
     }
 
     private void handleAcceptanceTimeout(String assignmentId) {
@@ -121,6 +206,7 @@ public class AssignmentService {
         assignment.setStatus(AssignmentStatus.ACCEPTED);
         assignment.setAcceptedAt(Instant.now());
         assignmentRepository.save(assignment);
+        scheduler.cancel(ACCEPTANCE_TIMEOUT, assignmentId);
 
         // Update order status to ACCEPTED
         Optional<Order> o = orderRepository.findById(assignment.getOrderId());
@@ -132,7 +218,7 @@ public class AssignmentService {
         }
 
         // schedule pickup timeout
-        scheduler.schedule(() -> handlePickupTimeout(assignment.getId()), pickupTimeoutSeconds, TimeUnit.SECONDS);
+        scheduler.schedule(PICKUP_TIMEOUT, assignment.getId(), Duration.ofSeconds(pickupTimeoutSeconds));
         return true;
     }
 
@@ -145,6 +231,7 @@ public class AssignmentService {
 
         assignment.setStatus(AssignmentStatus.REJECTED);
         assignmentRepository.save(assignment);
+        scheduler.cancel(ACCEPTANCE_TIMEOUT, assignmentId);
 
         // free partner
         userService.freePartner(partnerId);
@@ -181,6 +268,7 @@ public class AssignmentService {
         assignment.setStatus(AssignmentStatus.PICKED);
         assignment.setPickedAt(Instant.now());
         assignmentRepository.save(assignment);
+        scheduler.cancel(PICKUP_TIMEOUT, assignmentId);
 
         // Update order status to OUT_FOR_DELIVERY
         Optional<Order> o = orderRepository.findById(assignment.getOrderId());
@@ -192,7 +280,7 @@ public class AssignmentService {
         }
 
         // schedule delivery window timeout
-        scheduler.schedule(() -> handleDeliveryTimeout(assignment.getId()), deliveryWindowSeconds, TimeUnit.SECONDS);
+        scheduler.schedule(DELIVERY_TIMEOUT, assignment.getId(), Duration.ofSeconds(deliveryWindowSeconds));
         return true;
     }
 
@@ -228,6 +316,7 @@ public class AssignmentService {
         assignment.setStatus(AssignmentStatus.COMPLETED);
         assignment.setCompletedAt(Instant.now());
         assignmentRepository.save(assignment);
+        scheduler.cancel(DELIVERY_TIMEOUT, assignmentId);
 
         // Update order
         Optional<Order> o = orderRepository.findById(assignment.getOrderId());
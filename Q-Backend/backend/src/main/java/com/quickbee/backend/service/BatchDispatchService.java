@@ -0,0 +1,257 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.model.AddressSnapshot;
+import com.quickbee.backend.model.DeliveryAssignment;
+import com.quickbee.backend.model.Order;
+import com.quickbee.backend.model.User;
+import com.quickbee.backend.model.enums.OrderStatus;
+import com.quickbee.backend.model.enums.PartnerStatus;
+import com.quickbee.backend.util.MinCostAssignment;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batch dispatch ({@code dispatch.mode=batch}): every {@code dispatch.batch.interval-ms} the oldest
+ * queued orders are matched to available partners all at once instead of one order per event.
+ *
+ * Each order gets up to {@code dispatch.batch.candidates} nearest partners from {@link PartnerGeoIndex}
+ * (other pairs are forbidden), costed as trip distance in km minus a bonus for waiting
+ * ({@code age-weight} km per minute queued) and for earlier failed assignments ({@code retry-weight}
+ * km each), so old and retried orders win contested partners instead of starving. Pairs the index
+ * cannot measure, an order without coordinates or an available partner who has not reported a
+ * location yet ({@link UserService#findAvailablePartners}), are allowed at the largest ring's
+ * distance, so they are served after the nearby pairs rather than never. The min-cost
+ * matching ({@link MinCostAssignment}) is committed pair by pair through
+ * {@link AssignmentService#assignPair}, i.e. the same conditional updates as greedy dispatch; a
+ * pair that lost a race is left for the next tick. One node runs a tick at a time (Redis lock).
+ */
+@Service
+@ConditionalOnProperty(name = "dispatch.mode", havingValue = "batch")
+public class BatchDispatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchDispatchService.class);
+    private static final String LOCK_KEY = "dispatch:batch:lock";
+
+    // KEYS: lock; ARGV: token -- delete only our own lock
+    private static final RedisScript<Long> UNLOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end
+            return 0
+            """, Long.class);
+
+    private final DeliveryQueueService queueService;
+    private final PartnerGeoIndex geoIndex;
+    private final AssignmentService assignmentService;
+    private final UserService userService;
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final int maxOrders;
+    private final int candidates;
+    private final double ageWeight;
+    private final double retryWeight;
+    private final Duration lockTtl;
+    private final String nodeToken = UUID.randomUUID().toString();
+
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder ordersConsidered = new LongAdder();
+    private final LongAdder assigned = new LongAdder();
+    private final LongAdder lostRaces = new LongAdder();
+    private final LongAdder solveMicros = new LongAdder();
+    private final AtomicLong maxSolveMicros = new AtomicLong();
+    private final LongAdder assignedMeters = new LongAdder();
+
+    public BatchDispatchService(DeliveryQueueService queueService,
+                                PartnerGeoIndex geoIndex,
+                                AssignmentService assignmentService,
+                                UserService userService,
+                                MongoTemplate mongoTemplate,
+                                StringRedisTemplate redisTemplate,
+                                @Value("${dispatch.batch.max-orders:1000}") int maxOrders,
+                                @Value("${dispatch.batch.candidates:20}") int candidates,
+                                @Value("${dispatch.batch.age-weight:0.5}") double ageWeight,
+                                @Value("${dispatch.batch.retry-weight:2}") double retryWeight,
+                                @Value("${dispatch.batch.interval-ms:3000}") long intervalMillis) {
+        this.queueService = queueService;
+        this.geoIndex = geoIndex;
+        this.assignmentService = assignmentService;
+        this.userService = userService;
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.maxOrders = maxOrders;
+        this.candidates = candidates;
+        this.ageWeight = ageWeight;
+        this.retryWeight = retryWeight;
+        this.lockTtl = Duration.ofMillis(Math.max(10_000, intervalMillis * 5));
+    }
+
+    /** Cost of sending a partner {@code distanceKm} away to an order that waited and failed before. */
+    static double cost(double distanceKm, double ageMinutes, int retries, double ageWeight, double retryWeight) {
+        return distanceKm - ageWeight * ageMinutes - retryWeight * retries;
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.batch.interval-ms:3000}")
+    public void tick() {
+        try {
+            Boolean locked = redisTemplate.opsForValue().setIfAbsent(LOCK_KEY, nodeToken, lockTtl);
+            if (!Boolean.TRUE.equals(locked)) return;
+        } catch (Exception ex) {
+            log.warn("Batch dispatch skipped, Redis unavailable: {}", ex.getMessage());
+            return;
+        }
+        try {
+            dispatchQueued();
+        } catch (Exception ex) {
+            log.error("Batch dispatch failed: {}", ex.getMessage(), ex);
+        } finally {
+            try {
+                redisTemplate.execute(UNLOCK, List.of(LOCK_KEY), nodeToken);
+            } catch (Exception ignored) {
+                // expires on its own
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        long n = ticks.sum();
+        long a = assigned.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("ticks", n);
+        out.put("ordersConsidered", ordersConsidered.sum());
+        out.put("assigned", a);
+        out.put("lostRaces", lostRaces.sum());
+        out.put("avgSolveMicros", n == 0 ? 0 : solveMicros.sum() / n);
+        out.put("maxSolveMicros", maxSolveMicros.get());
+        out.put("avgTripKm", a == 0 ? 0 : assignedMeters.sum() / 1000.0 / a);
+        return out;
+    }
+
+    /* ========= Internals ========= */
+
+    private void dispatchQueued() {
+        List<String> queued = queueService.peekOldest(maxOrders);
+        if (queued.isEmpty()) return;
+
+        Query q = new Query(Criteria.where("_id").in(queued)
+                .and("status").is(OrderStatus.CONFIRMED)
+                .and("assignedPartnerId").is(null));
+        q.fields().include("address").include("queuedAt").include("createdAt");
+        List<Order> orders = mongoTemplate.find(q, Order.class);
+
+        Set<String> open = new HashSet<>();
+        orders.forEach(o -> open.add(o.getId()));
+        for (String id : queued) {
+            if (!open.contains(id)) queueService.removeOrderFromQueue(id); // assigned or cancelled meanwhile
+        }
+        if (orders.isEmpty()) return;
+
+        // candidate partners per located order, from the geo index
+        Map<String, Integer> retries = retryCounts(open);
+        Map<String, Integer> column = new LinkedHashMap<>();
+        List<Map<String, Double>> near = new ArrayList<>(orders.size());
+        boolean anyUnlocated = false;
+        for (Order o : orders) {
+            Map<String, Double> found = Map.of();
+            if (located(o)) {
+                found = geoIndex.within(o.getAddress().getLat(), o.getAddress().getLng(), candidates);
+            } else {
+                anyUnlocated = true;
+            }
+            found.keySet().forEach(pid -> column.putIfAbsent(pid, column.size()));
+            near.add(found);
+        }
+
+        // partners the index cannot place fit any order; orders without coordinates fit any partner
+        Set<Integer> unplaced = new HashSet<>();
+        int extra = 0;
+        for (User p : userService.findAvailablePartners()) {
+            if (extra >= orders.size()) break; // more columns than orders cannot all be used
+            if (p.getPartnerStatus() != PartnerStatus.AVAILABLE || column.containsKey(p.getId())) continue;
+            boolean hasLocation = p.getCurrentLat() != null && p.getCurrentLng() != null;
+            if (hasLocation && !anyUnlocated) continue;
+            if (!hasLocation) unplaced.add(column.size());
+            column.put(p.getId(), column.size());
+            extra++;
+        }
+        if (column.isEmpty()) return;
+        List<String> partners = new ArrayList<>(column.keySet());
+
+        Instant now = Instant.now();
+        double[][] cost = new double[orders.size()][partners.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            Order o = orders.get(i);
+            Instant since = o.getQueuedAt() != null ? o.getQueuedAt() : o.getCreatedAt();
+            double ageMinutes = since == null ? 0 : Duration.between(since, now).toMillis() / 60_000.0;
+            int failed = retries.getOrDefault(o.getId(), 0);
+            double unmeasured = cost(geoIndex.maxRadiusKm(), ageMinutes, failed, ageWeight, retryWeight);
+            if (located(o)) {
+                Arrays.fill(cost[i], MinCostAssignment.FORBIDDEN);
+                for (int j : unplaced) cost[i][j] = unmeasured;
+            } else {
+                Arrays.fill(cost[i], unmeasured);
+            }
+            for (Map.Entry<String, Double> e : near.get(i).entrySet()) {
+                cost[i][column.get(e.getKey())] = cost(e.getValue(), ageMinutes, failed, ageWeight, retryWeight);
+            }
+        }
+
+        long start = System.nanoTime();
+        int[] match = MinCostAssignment.solve(cost);
+        long micros = (System.nanoTime() - start) / 1_000;
+
+        int done = 0;
+        for (int i = 0; i < match.length; i++) {
+            if (match[i] < 0) continue;
+            String orderId = orders.get(i).getId();
+            String partnerId = partners.get(match[i]);
+            if (assignmentService.assignPair(orderId, partnerId)) {
+                done++;
+                Double km = near.get(i).get(partnerId);
+                if (km != null) assignedMeters.add(Math.round(km * 1000));
+            } else {
+                lostRaces.increment();
+            }
+        }
+
+        ticks.increment();
+        ordersConsidered.add(orders.size());
+        assigned.add(done);
+        solveMicros.add(micros);
+        maxSolveMicros.accumulateAndGet(micros, Math::max);
+        log.debug("Batch dispatch: {} orders x {} partners solved in {} us, {} assigned",
+                orders.size(), partners.size(), micros, done);
+    }
+
+    private static boolean located(Order o) {
+        AddressSnapshot to = o.getAddress();
+        return to != null && to.getLat() != null && to.getLng() != null;
+    }
+
+    // earlier assignments of each order that did not go through (rejected, timed out)
+    private Map<String, Integer> retryCounts(Collection<String> orderIds) {
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("orderId").in(orderIds)),
+                Aggregation.group("orderId").count().as("n"));
+        Map<String, Integer> out = new HashMap<>();
+        for (Document d : mongoTemplate.aggregate(agg, DeliveryAssignment.class, Document.class)) {
+            out.put(d.getString("_id"), d.getInteger("n"));
+        }
+        return out;
+    }
+}
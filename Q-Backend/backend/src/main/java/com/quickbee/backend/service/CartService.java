@@ -1,6 +1,7 @@
 package com.quickbee.backend.service;
 
 import com.quickbee.backend.dto.AddItemRequest;
+import com.quickbee.backend.dto.CartBatchRequest;
 import com.quickbee.backend.dto.CartItemResponse;
 import com.quickbee.backend.dto.CartResponse;
 import com.quickbee.backend.dto.UpdateItemRequest;
@@ -8,165 +9,124 @@ import com.quickbee.backend.exception.ResourceNotFoundException;
 import com.quickbee.backend.model.Cart;
 import com.quickbee.backend.model.CartItem;
 import com.quickbee.backend.model.Product;
-import com.quickbee.backend.model.User;
-import com.quickbee.backend.repository.CartRepository;
-import com.quickbee.backend.repository.ProductRepository;
-import com.quickbee.backend.repository.UserRepository;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import com.quickbee.backend.security.SecurityUtils;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class CartService {
 
-    private final CartRepository cartRepo;
-    private final ProductRepository productRepo;
-    private final UserRepository userRepo;
+    private final ProductCache productCache;
+    private final CartStore cartStore; // mongo or redis, see cart.store
+    private final ProductBatchLoader productLoader;
 
-    public CartService(CartRepository cartRepo,
-                       ProductRepository productRepo,
-                       UserRepository userRepo) {
-        this.cartRepo = cartRepo;
-        this.productRepo = productRepo;
-        this.userRepo = userRepo;
+    public CartService(ProductCache productCache,
+                       CartStore cartStore,
+                       ProductBatchLoader productLoader) {
+        this.productCache = productCache;
+        this.cartStore = cartStore;
+        this.productLoader = productLoader;
     }
 
     /* ========= Public API ========= */
 
     public CartResponse getMyCart() {
-        Cart cart = getOrCreateCart(getCurrentUserId());
+        Cart cart = cartStore.get(getCurrentUserId());
         return toResponse(cart, /*refreshPrices*/ true);
     }
 
     @Transactional
     public CartResponse addItem(AddItemRequest req) {
         String userId = getCurrentUserId();
-        Cart cart = getOrCreateCart(userId);
 
-        Product product = productRepo.findById(req.getProductId())
+        // stock-sensitive: clamp against a recent stock value
+        Product product = productCache.getFresh(req.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + req.getProductId()));
 
         int stock = product.getStockQuantity() == null ? 0 : product.getStockQuantity();
-        int desired = req.getQty();
-        int finalQty = Math.max(1, Math.min(desired, stock)); // clamp to [1..stock]
-
-        // if stock is 0, reject
-        if (finalQty == 0) {
+        if (stock <= 0) {
             throw new ResourceNotFoundException("Product out of stock: " + product.getId());
         }
+        int finalQty = Math.max(1, Math.min(req.getQty(), stock)); // clamp to [1..stock]
 
-        CartItem existing = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(product.getId()))
-                .findFirst()
-                .orElse(null);
-
-        if (existing == null) {
-            cart.getItems().add(new CartItem(
-                    product.getId(),
-                    product.getName(),
-                    product.getImageUrl(),
-                    product.getPrice(),
-                    finalQty
-            ));
-        } else {
-            int newQty = Math.min(existing.getQty() + finalQty, stock);
-            existing.setQty(newQty);
-            // update snapshot price/name in case they changed
-            existing.setPrice(product.getPrice());
-            existing.setName(product.getName());
-            existing.setImageUrl(product.getImageUrl());
-        }
-
-        recompute(cart, /*refreshPrices*/ false);
-        cartRepo.save(cart);
-        return toResponse(cart, false);
+        return toResponse(cartStore.addItem(userId, product, finalQty, stock), false);
     }
 
     @Transactional
     public CartResponse updateItem(String productId, UpdateItemRequest req) {
         String userId = getCurrentUserId();
-        Cart cart = getOrCreateCart(userId);
 
-        Product product = productRepo.findById(productId)
+        Product product = productCache.getFresh(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + productId));
 
-        CartItem existing = cart.getItems().stream()
-                .filter(i -> i.getProductId().equals(productId))
-                .findFirst()
-                .orElseThrow(() -> new ResourceNotFoundException("Item not in cart: " + productId));
-
         int stock = product.getStockQuantity() == null ? 0 : product.getStockQuantity();
-        int qty = Math.max(0, Math.min(req.getQty(), stock)); // clamp to [0..stock]
-
-        if (qty == 0) {
-            cart.getItems().remove(existing);
-        } else {
-            existing.setQty(qty);
-            // refresh snapshots
-            existing.setPrice(product.getPrice());
-            existing.setName(product.getName());
-            existing.setImageUrl(product.getImageUrl());
-        }
+        int qty = Math.max(0, Math.min(req.getQty(), stock)); // clamp to [0..stock], 0 removes the line
 
-        recompute(cart, /*refreshPrices*/ false);
-        cartRepo.save(cart);
+        Cart cart = cartStore.setItem(userId, productId, product, qty);
+        if (cart == null) throw new ResourceNotFoundException("Item not in cart: " + productId);
         return toResponse(cart, false);
     }
 
     @Transactional
     public CartResponse removeItem(String productId) {
         String userId = getCurrentUserId();
-        Cart cart = getOrCreateCart(userId);
-
-        boolean removed = cart.getItems().removeIf(i -> i.getProductId().equals(productId));
-        if (!removed) {
-            throw new ResourceNotFoundException("Item not in cart: " + productId);
-        }
-
-        recompute(cart, false);
-        cartRepo.save(cart);
+        Cart cart = cartStore.setItem(userId, productId, null, 0);
+        if (cart == null) throw new ResourceNotFoundException("Item not in cart: " + productId);
         return toResponse(cart, false);
     }
 
     @Transactional
     public CartResponse clearCart() {
-        String userId = getCurrentUserId();
-        Cart cart = getOrCreateCart(userId);
-        cart.getItems().clear();
-        recompute(cart, false);
-        cartRepo.save(cart);
-        return toResponse(cart, false);
+        return toResponse(cartStore.clear(getCurrentUserId()), false);
     }
 
-    /* ========= Helpers ========= */
+    /**
+     * Applies several add/set/remove operations in order: one stock query for every touched product,
+     * then one atomic cart update. Quantities are clamped to stock exactly as in the single-item calls.
+     */
+    @Transactional
+    public CartResponse applyBatch(CartBatchRequest req) {
+        String userId = getCurrentUserId();
+
+        List<String> ids = req.getOps().stream()
+                .filter(op -> op.getType() != CartBatchRequest.Type.REMOVE)
+                .map(CartBatchRequest.Op::getProductId)
+                .distinct()
+                .toList();
+        Map<String, Product> products = productLoader.loadFresh(ids);
+
+        List<CartStore.LineOp> ops = new ArrayList<>(req.getOps().size());
+        for (CartBatchRequest.Op op : req.getOps()) {
+            String productId = op.getProductId();
+            if (op.getType() == CartBatchRequest.Type.REMOVE) {
+                ops.add(CartStore.LineOp.set(productId, null, 0));
+                continue;
+            }
+            Product product = products.get(productId);
+            if (product == null) throw new ResourceNotFoundException("Product not found: " + productId);
+            int stock = product.getStockQuantity() == null ? 0 : product.getStockQuantity();
+
+            if (op.getType() == CartBatchRequest.Type.ADD) {
+                if (stock <= 0) throw new ResourceNotFoundException("Product out of stock: " + productId);
+                ops.add(CartStore.LineOp.add(product, Math.max(1, Math.min(op.getQty(), stock)), stock));
+            } else {
+                ops.add(CartStore.LineOp.set(productId, product, Math.max(0, Math.min(op.getQty(), stock))));
+            }
+        }
 
-    private Cart getOrCreateCart(String userId) {
-        return cartRepo.findByUserId(userId).orElseGet(() -> {
-            Cart c = new Cart();
-            c.setUserId(userId);
-            c.setItems(new ArrayList<>());
-            c.setSubtotal(0.0);
-            c.setTotalItems(0);
-            return cartRepo.save(c);
-        });
+        return toResponse(cartStore.apply(userId, ops), false);
     }
 
+    /* ========= Helpers ========= */
+
     private String getCurrentUserId() {
-        // JWT contains email as username; resolve the DB user to get the userId
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) throw new IllegalStateException("Unauthenticated");
-        Object principal = auth.getPrincipal();
-        String email = (principal instanceof UserDetails ud) ? ud.getUsername() : principal.toString();
-
-        User user = userRepo.findByEmail(email)
-                .orElseThrow(() -> new ResourceNotFoundException("User not found: " + email));
-        return user.getId();
+        // userId comes straight from the verified JWT claims (no users lookup)
+        return SecurityUtils.currentUserId();
     }
 
     private void recompute(Cart cart, boolean refreshPrices) {
@@ -174,10 +134,11 @@ public class CartService {
         int totalItems = 0;
 
         if (refreshPrices) {
-            // refresh each item's price/name/image from current product state
+            // refresh each item's price/name/image from current product state (one batch read for all lines)
+            Map<String, Product> products = productLoader.load(
+                    cart.getItems().stream().map(CartItem::getProductId).toList());
             for (CartItem item : cart.getItems()) {
-                Product product = productRepo.findById(item.getProductId())
-                        .orElse(null);
+                Product product = products.get(item.getProductId());
                 if (product != null) {
                     item.setPrice(product.getPrice());
                     item.setName(product.getName());
@@ -224,7 +185,7 @@ public class CartService {
                 cart.getId(),
                 cart.getUserId(),
                 items,
-                cart.getSubtotal(),
+                round2(cart.getSubtotal() == null ? 0.0 : cart.getSubtotal()), // $inc on doubles can leave float noise
                 cart.getTotalItems()
         );
     }
@@ -0,0 +1,56 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.model.Cart;
+import com.quickbee.backend.model.Product;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where active carts live. Selected per deployment with {@code cart.store}:
+ * {@code mongo} (default, {@link MongoCartStore}) or {@code redis} ({@link RedisCartStore}).
+ *
+ * Stock and product checks stay in {@link CartService}; a store only applies line changes atomically
+ * and returns the resulting cart. Price/name/image snapshots are taken from the given product.
+ */
+public interface CartStore {
+
+    /** Current cart; an empty, unsaved cart if the user has none. */
+    Cart get(String userId);
+
+    /** Adds {@code qty} to the product's line (creating it), capped at {@code maxQty}. */
+    Cart addItem(String userId, Product product, int qty, int maxQty);
+
+    /**
+     * Sets the line's qty; 0 removes it. {@code product} refreshes the snapshot, null keeps it.
+     * Returns null when the product is not in the cart.
+     */
+    Cart setItem(String userId, String productId, Product product, int qty);
+
+    Cart clear(String userId);
+
+    /**
+     * Applies all changes in order as one atomic update. Unlike {@link #setItem}, a SET with a product
+     * creates a missing line, and removing a missing line is a no-op.
+     */
+    Cart apply(String userId, List<LineOp> ops);
+
+    /** Makes the carts collection current for this user; checkout reads carts from Mongo. */
+    void flush(String userId);
+
+    /** Write counters, to compare the stores' write amplification. */
+    Map<String, Object> getStats();
+
+    /** One line change of {@link #apply}. ADD adds {@code qty} capped at {@code maxQty}; SET sets it, 0 removes. */
+    record LineOp(Kind kind, String productId, Product product, int qty, int maxQty) {
+        public enum Kind { ADD, SET }
+
+        public static LineOp add(Product product, int qty, int maxQty) {
+            return new LineOp(Kind.ADD, product.getId(), product, qty, maxQty);
+        }
+
+        public static LineOp set(String productId, Product product, int qty) {
+            return new LineOp(Kind.SET, productId, product, qty, qty);
+        }
+    }
+}
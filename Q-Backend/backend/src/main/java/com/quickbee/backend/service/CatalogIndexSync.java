@@ -0,0 +1,157 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.model.Product;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Keeps the in-memory catalog indexes (search, facets, suggest) of every node in step.
+ *
+ * Writers apply a change to the local indexes and broadcast the affected product ids on
+ * {@value #CHANNEL}. Other nodes re-read those products from Mongo rather than trusting the
+ * payload, so messages from different nodes may arrive in any order and the indexes still
+ * converge on the stored state. A node that misses a message (Redis down) catches up on its next
+ * start-up rebuild.
+ */
+@Component
+public class CatalogIndexSync implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogIndexSync.class);
+    public static final String CHANNEL = "catalog:index";
+
+    // message kinds: product written / deleted, or only its stock changed
+    private static final char UPSERT = 'u', REMOVE = 'd', STOCK = 's';
+
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ProductSearchIndex searchIndex;
+    private final ProductFacetIndex facetIndex;
+    private final ProductSuggestIndex suggestIndex;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8); // skips our own messages
+
+    public CatalogIndexSync(MongoTemplate mongoTemplate,
+                            StringRedisTemplate redisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            ProductSearchIndex searchIndex,
+                            ProductFacetIndex facetIndex,
+                            ProductSuggestIndex suggestIndex) {
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+        this.suggestIndex = suggestIndex;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /* ========= Local change + broadcast ========= */
+
+    public void upsert(Product p) {
+        upsertAll(List.of(p));
+    }
+
+    /** Product created or edited; {@code products} must carry the indexed catalog fields. */
+    public void upsertAll(Collection<Product> products) {
+        if (products.isEmpty()) return;
+        applyUpserts(products);
+        publish(UPSERT, products.stream().map(Product::getId).toList());
+    }
+
+    public void remove(String productId) {
+        applyRemove(productId);
+        publish(REMOVE, List.of(productId));
+    }
+
+    /**
+     * Stock-only change (checkout, rollback, stripe fold), productId -> new stock.
+     * Returns true when some product's in-stock state flipped on this node.
+     */
+    public boolean stockChanged(Map<String, Integer> stock) {
+        if (stock.isEmpty()) return false;
+        boolean flipped = false;
+        for (Map.Entry<String, Integer> e : stock.entrySet()) flipped |= facetIndex.updateStock(e.getKey(), e.getValue());
+        // only a flip moves a product between facet cells, so only flips need to reach other nodes
+        if (flipped) publish(STOCK, stock.keySet());
+        return flipped;
+    }
+
+    public boolean stockChanged(String productId, Integer stockQuantity) {
+        return stockChanged(Collections.singletonMap(productId, stockQuantity));
+    }
+
+    private void publish(char kind, Collection<String> ids) {
+        try {
+            redisTemplate.convertAndSend(CHANNEL, nodeId + ":" + kind + ":" + String.join(",", ids));
+        } catch (Exception ex) {
+            log.error("Failed to publish index change for {} products: {}", ids.size(), ex.getMessage());
+        }
+    }
+
+    /* ========= Remote changes ========= */
+
+    // payload is "<nodeId>:<kind>:<id>,<id>,..."
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":", 3);
+        if (parts.length < 3 || parts[0].equals(nodeId) || parts[1].length() != 1 || parts[2].isEmpty()) return;
+        List<String> ids = Arrays.asList(parts[2].split(","));
+        try {
+            switch (parts[1].charAt(0)) {
+                case UPSERT -> reload(ids);
+                case REMOVE -> ids.forEach(this::applyRemove);
+                case STOCK -> reloadStock(ids);
+                default -> { }
+            }
+        } catch (Exception ex) {
+            log.error("Failed to apply index change for {} products: {}", ids.size(), ex.getMessage());
+        }
+    }
+
+    private void reload(List<String> ids) {
+        Query q = new Query(Criteria.where("_id").in(ids));
+        q.fields().include("name").include("description").include("category").include("price").include("stockQuantity");
+        List<Product> found = mongoTemplate.find(q, Product.class);
+        applyUpserts(found);
+        // a product deleted after the message was sent
+        Set<String> missing = new HashSet<>(ids);
+        found.forEach(p -> missing.remove(p.getId()));
+        missing.forEach(this::applyRemove);
+    }
+
+    private void reloadStock(List<String> ids) {
+        Query q = new Query(Criteria.where("_id").in(ids));
+        q.fields().include("stockQuantity");
+        for (Product p : mongoTemplate.find(q, Product.class)) facetIndex.updateStock(p.getId(), p.getStockQuantity());
+    }
+
+    private void applyUpserts(Collection<Product> products) {
+        searchIndex.upsertAll(products);
+        facetIndex.upsertAll(products);
+        suggestIndex.upsertAll(products);
+    }
+
+    private void applyRemove(String productId) {
+        searchIndex.remove(productId);
+        facetIndex.remove(productId);
+        suggestIndex.remove(productId);
+    }
+}
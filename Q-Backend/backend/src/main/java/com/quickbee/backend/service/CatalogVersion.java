@@ -0,0 +1,107 @@
+package com.quickbee.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Global catalog change counter, used to build list ETags.
+ *
+ * The counter lives in Redis ({@value #COUNTER_KEY}) and is bumped on every change that can alter
+ * a product listing. Nodes keep a local copy that is pushed over {@value #CHANNEL} and re-read at
+ * most every {@code catalog.version.refresh-ms}, so {@link #token()} costs no round trip on the hot
+ * path. An epoch key guards against a wiped Redis reusing old counter values, and bumps that could
+ * not reach Redis are added locally so this node never hands out an ETag for older content.
+ */
+@Component
+public class CatalogVersion implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogVersion.class);
+    public static final String CHANNEL = "catalog:version";
+    private static final String COUNTER_KEY = "catalog:version";
+    private static final String EPOCH_KEY = "catalog:version:epoch";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final long refreshMillis;
+
+    private final AtomicLong counter = new AtomicLong();
+    private final AtomicLong offlineBumps = new AtomicLong(); // never reset: keeps tokens monotonic on this node
+    private volatile String epoch = "0";
+    private volatile long syncedAt;
+
+    public CatalogVersion(StringRedisTemplate redisTemplate,
+                          RedisMessageListenerContainer listenerContainer,
+                          @Value("${catalog.version.refresh-ms:1000}") long refreshMillis) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.refreshMillis = refreshMillis;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /** Opaque token that changes whenever the catalog changes. */
+    public String token() {
+        if (System.currentTimeMillis() - syncedAt > refreshMillis) sync();
+        return epoch + "." + counter.get() + "." + offlineBumps.get();
+    }
+
+    public void bump() {
+        try {
+            Long v = redisTemplate.opsForValue().increment(COUNTER_KEY);
+            if (v != null) {
+                counter.accumulateAndGet(v, Math::max);
+                redisTemplate.convertAndSend(CHANNEL, Long.toString(v));
+            }
+        } catch (Exception ex) {
+            offlineBumps.incrementAndGet();
+            syncedAt = 0;
+            log.error("Failed to bump catalog version: {}", ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            counter.accumulateAndGet(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8)), Math::max);
+        } catch (NumberFormatException ignored) {
+        }
+    }
+
+    private synchronized void sync() {
+        if (System.currentTimeMillis() - syncedAt <= refreshMillis) return;
+        try {
+            redisTemplate.opsForValue().setIfAbsent(EPOCH_KEY, UUID.randomUUID().toString().substring(0, 8));
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(EPOCH_KEY, COUNTER_KEY));
+            String e = values == null ? null : values.get(0);
+            String c = values == null ? null : values.get(1);
+            long v = c == null ? 0 : Long.parseLong(c);
+            if (e != null && !e.equals(epoch)) {
+                epoch = e;
+                counter.set(v); // new epoch: old counter values can no longer collide
+            } else {
+                counter.accumulateAndGet(v, Math::max);
+            }
+            syncedAt = System.currentTimeMillis();
+        } catch (Exception ex) {
+            // keep serving the last known token; retry on the next window
+            syncedAt = System.currentTimeMillis();
+            log.warn("Failed to read catalog version: {}", ex.getMessage());
+        }
+    }
+}
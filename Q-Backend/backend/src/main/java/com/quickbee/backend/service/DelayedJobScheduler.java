@@ -0,0 +1,295 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.util.HashedWheelTimer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Durable delayed jobs shared by all nodes (delivery assignment timeouts).
+ *
+ * A job is a member {@code <type>:<id>} of the Redis sorted set {@value #DUE_KEY}, scored by its due
+ * time in ms, so pending jobs survive restarts and cost nothing in the JVM until they are nearly due.
+ * Every node polls the set; one Lua call moves up to {@code jobs.poll-batch} members due within
+ * {@code jobs.lookahead-ms} into {@value #RUNNING_KEY} (scored by due time + lease), so each job is
+ * handed to exactly one node. The claimed jobs wait on a {@link HashedWheelTimer} and fire on their
+ * due tick rather than on the next poll; {@link #cancel} drops a job from the set or the wheel in
+ * O(1) locally. A job is acknowledged once its handler returns; if the node dies or the handler
+ * throws, the lease runs out and the job is due again, so handlers must tolerate a repeat (they
+ * re-check state before acting). Scheduling the same type and id again replaces the pending deadline.
+ * Handler failures are counted per job in {@value #ATTEMPTS_KEY}; after {@code jobs.max-attempts} the
+ * job is parked in {@value #DEAD_KEY} (scored by the time it gave up) instead of being retried.
+ */
+@Service
+public class DelayedJobScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(DelayedJobScheduler.class);
+    private static final String DUE_KEY = "jobs:due";         // <type>:<id> -> due at (ms)
+    private static final String RUNNING_KEY = "jobs:running"; // <type>:<id> -> lease expiry (ms)
+    private static final String ATTEMPTS_KEY = "jobs:attempts"; // <type>:<id> -> failed runs so far
+    private static final String DEAD_KEY = "jobs:dead";       // <type>:<id> -> gave up at (ms)
+
+    // KEYS: due, running; ARGV: now, horizon, limit, lease (ms)
+    // -> [member, dueAt, member, dueAt, ..., redelivered count]
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM = new DefaultRedisScript<>("""
+            local expired = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1])
+            for _, m in ipairs(expired) do
+              redis.call('ZREM', KEYS[2], m)
+              redis.call('ZADD', KEYS[1], 'NX', ARGV[1], m)
+            end
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[2], 'WITHSCORES', 'LIMIT', 0, tonumber(ARGV[3]))
+            for i = 1, #due, 2 do
+              redis.call('ZREM', KEYS[1], due[i])
+              redis.call('ZADD', KEYS[2], tonumber(due[i + 1]) + tonumber(ARGV[4]), due[i])
+            end
+            due[#due + 1] = tostring(#expired)
+            return due
+            """, List.class);
+
+    // KEYS: due, running; ARGV: dueAt, member -- hands a job this node holds back to all nodes
+    private static final RedisScript<Long> UNCLAIM = new DefaultRedisScript<>("""
+            if redis.call('ZREM', KEYS[2], ARGV[2]) == 1 then
+              redis.call('ZADD', KEYS[1], 'NX', ARGV[1], ARGV[2])
+            end
+            return 1
+            """, Long.class);
+
+    // KEYS: running, attempts; ARGV: member -- the handler returned
+    private static final RedisScript<Long> ACK = new DefaultRedisScript<>("""
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            return redis.call('ZREM', KEYS[1], ARGV[1])
+            """, Long.class);
+
+    // KEYS: running, attempts, dead; ARGV: member, maxAttempts, now -> failed runs, negative once dead-lettered
+    private static final RedisScript<Long> FAIL = new DefaultRedisScript<>("""
+            local n = redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+            if n < tonumber(ARGV[2]) then return n end
+            redis.call('HDEL', KEYS[2], ARGV[1])
+            if redis.call('ZREM', KEYS[1], ARGV[1]) == 1 then
+              redis.call('ZADD', KEYS[3], ARGV[3], ARGV[1])
+            end
+            return -n
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration lookahead;
+    private final int maxAttempts;
+    private final ExecutorService workers;
+    private final HashedWheelTimer wheel;
+
+    private final Map<String, Consumer<String>> handlers = new ConcurrentHashMap<>();
+    private final Map<String, Held> held = new ConcurrentHashMap<>(); // claimed here, waiting on the wheel
+    private final LongAdder scheduled = new LongAdder();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder redelivered = new LongAdder();
+    private final LongAdder lagTotalMs = new LongAdder();
+    private final AtomicLong lagMaxMs = new AtomicLong();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder deadLettered = new LongAdder();
+
+    public DelayedJobScheduler(StringRedisTemplate redisTemplate,
+                               @Value("${jobs.poll-batch:100}") int batchSize,
+                               @Value("${jobs.lease-seconds:60}") long leaseSeconds,
+                               @Value("${jobs.lookahead-ms:2000}") long lookaheadMillis,
+                               @Value("${jobs.tick-ms:50}") long tickMillis,
+                               @Value("${jobs.workers:4}") int workers,
+                               @Value("${jobs.max-attempts:5}") int maxAttempts) {
+        this.redisTemplate = redisTemplate;
+        this.batchSize = batchSize;
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.lookahead = Duration.ofMillis(lookaheadMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.workers = Executors.newFixedThreadPool(workers);
+        // one round of the wheel covers the lookahead, so claimed jobs never wait for extra rounds
+        int buckets = (int) Math.max(64, lookaheadMillis / tickMillis + 1);
+        this.wheel = new HashedWheelTimer("delayed-jobs", tickMillis, TimeUnit.MILLISECONDS, buckets, this.workers);
+    }
+
+    /** Registers the handler for a job type; it receives the job id. */
+    public void register(String type, Consumer<String> handler) {
+        if (type.contains(":")) throw new IllegalArgumentException("Job type must not contain ':'");
+        handlers.put(type, handler);
+    }
+
+    /** Runs the {@code type} handler for {@code id} once, on some node, after {@code delay}. */
+    public void schedule(String type, String id, Duration delay) {
+        String member = type + ":" + id;
+        long dueAt = System.currentTimeMillis() + delay.toMillis();
+        try {
+            Held h = held.remove(member);
+            if (h != null && h.timeout().cancel()) redisTemplate.opsForZSet().remove(RUNNING_KEY, member);
+            redisTemplate.opsForZSet().add(DUE_KEY, member, dueAt);
+            redisTemplate.opsForHash().delete(ATTEMPTS_KEY, member); // a new deadline starts a fresh job
+            scheduled.increment();
+        } catch (Exception ex) {
+            log.error("Failed to schedule {} job for {}: {}", type, id, ex.getMessage());
+        }
+    }
+
+    /**
+     * Drops a pending job; a no-op if it already ran or is running. A job another node has already
+     * claimed may still run there.
+     */
+    public void cancel(String type, String id) {
+        String member = type + ":" + id;
+        try {
+            Held h = held.remove(member);
+            if (h != null && h.timeout().cancel()) {
+                redisTemplate.opsForZSet().remove(RUNNING_KEY, member);
+                cancelled.increment();
+            } else {
+                Long removed = redisTemplate.opsForZSet().remove(DUE_KEY, member);
+                if (removed != null && removed > 0) cancelled.increment();
+            }
+            redisTemplate.opsForHash().delete(ATTEMPTS_KEY, member);
+        } catch (Exception ex) {
+            log.warn("Failed to cancel {} job for {}: {}", type, id, ex.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.poll-ms:500}")
+    @SuppressWarnings("unchecked")
+    public void runDue() {
+        long now = System.currentTimeMillis();
+        List<String> claimed;
+        try {
+            claimed = redisTemplate.execute(CLAIM, List.of(DUE_KEY, RUNNING_KEY), String.valueOf(now),
+                    String.valueOf(now + lookahead.toMillis()), String.valueOf(batchSize), String.valueOf(lease.toMillis()));
+        } catch (Exception ex) {
+            log.warn("Delayed jobs skipped, Redis unavailable: {}", ex.getMessage());
+            return;
+        }
+        if (claimed == null || claimed.isEmpty()) return;
+        redelivered.add(Long.parseLong(claimed.get(claimed.size() - 1)));
+
+        for (int i = 0; i + 1 < claimed.size(); i += 2) {
+            String member = claimed.get(i);
+            long dueAt = (long) Double.parseDouble(claimed.get(i + 1));
+            hold(member, dueAt);
+        }
+    }
+
+    // hand the jobs this node holds back to the others rather than wait for their lease
+    @PreDestroy
+    void shutdown() {
+        wheel.stop();
+        for (Map.Entry<String, Held> e : held.entrySet()) {
+            try {
+                redisTemplate.execute(UNCLAIM, List.of(DUE_KEY, RUNNING_KEY),
+                        String.valueOf(e.getValue().dueAt()), e.getKey());
+            } catch (Exception ex) {
+                break; // Redis gone: the leases run out instead
+            }
+        }
+        held.clear();
+        workers.shutdown();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("scheduled", scheduled.sum());
+        out.put("executed", executed.sum());
+        out.put("failed", failed.sum());
+        out.put("cancelled", cancelled.sum());
+        out.put("deadLettered", deadLettered.sum());
+        out.put("redelivered", redelivered.sum());
+        long runs = executed.sum() + failed.sum();
+        out.put("avgLagMs", runs == 0 ? 0 : lagTotalMs.sum() / runs);
+        out.put("maxLagMs", lagMaxMs.get());
+        out.put("onWheel", wheel.pending());
+        try {
+            out.put("pending", redisTemplate.opsForZSet().zCard(DUE_KEY));
+            out.put("overdue", redisTemplate.opsForZSet().count(DUE_KEY, 0, System.currentTimeMillis()));
+            out.put("running", redisTemplate.opsForZSet().zCard(RUNNING_KEY));
+            out.put("dead", redisTemplate.opsForZSet().zCard(DEAD_KEY));
+        } catch (Exception ex) {
+            out.put("backlog", "unavailable");
+        }
+        return out;
+    }
+
+    /* ========= Internals ========= */
+
+    private void hold(String member, long dueAt) {
+        int sep = member.indexOf(':');
+        String type = sep < 0 ? member : member.substring(0, sep);
+        Consumer<String> handler = handlers.get(type);
+        if (handler == null) {
+            // another node's job type: leave it to come back after the lease
+            log.warn("No handler for delayed job {}", member);
+            return;
+        }
+        String id = member.substring(sep + 1);
+        long delay = dueAt - System.currentTimeMillis();
+        HashedWheelTimer.Timeout timeout = wheel.schedule(
+                () -> run(member, id, handler, dueAt), delay, TimeUnit.MILLISECONDS);
+        Held previous = held.put(member, new Held(timeout, dueAt));
+        if (previous != null) previous.timeout().cancel(); // rescheduled meanwhile: only the newest runs
+    }
+
+    private void run(String member, String id, Consumer<String> handler, long dueAt) {
+        held.computeIfPresent(member, (k, h) -> h.dueAt() == dueAt ? null : h);
+        recordLag(System.currentTimeMillis() - dueAt);
+        try {
+            handler.accept(id);
+            executed.increment();
+        } catch (RuntimeException ex) {
+            failed.increment();
+            fail(member, ex);
+            return;
+        }
+        try {
+            redisTemplate.execute(ACK, List.of(RUNNING_KEY, ATTEMPTS_KEY), member);
+        } catch (Exception ex) {
+            log.warn("Delayed job {} done but not acknowledged, may run again: {}", member, ex.getMessage());
+        }
+    }
+
+    // counts the failure; past maxAttempts the job leaves running for the dead set instead of coming back
+    private void fail(String member, RuntimeException cause) {
+        Long attempts;
+        try {
+            attempts = redisTemplate.execute(FAIL, List.of(RUNNING_KEY, ATTEMPTS_KEY, DEAD_KEY),
+                    member, String.valueOf(maxAttempts), String.valueOf(System.currentTimeMillis()));
+        } catch (Exception ex) {
+            log.error("Delayed job {} failed, retried after the lease: {}", member, cause.getMessage());
+            return;
+        }
+        if (attempts != null && attempts < 0) {
+            deadLettered.increment();
+            log.error("Delayed job {} failed {} times, moved to {}: {}", member, -attempts, DEAD_KEY, cause.getMessage(), cause);
+        } else {
+            log.error("Delayed job {} failed (attempt {} of {}), retried after the lease: {}",
+                    member, attempts, maxAttempts, cause.getMessage());
+        }
+    }
+
+    private void recordLag(long lagMs) {
+        lagTotalMs.add(Math.max(0, lagMs));
+        lagMaxMs.accumulateAndGet(lagMs, Math::max);
+    }
+
+    private record Held(HashedWheelTimer.Timeout timeout, long dueAt) {}
+}
@@ -3,6 +3,8 @@ package com.quickbee.backend.service;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+
 @Service
 public class DeliveryQueueService {
 
@@ -28,6 +30,12 @@ public class DeliveryQueueService {
         return redisTemplate.opsForList().leftPop(QUEUE_KEY);
     }
 
+    // oldest queued orders without removing them (batch dispatch claims them through Mongo)
+    public List<String> peekOldest(int count) {
+        List<String> ids = redisTemplate.opsForList().range(QUEUE_KEY, 0, count - 1);
+        return ids == null ? List.of() : ids;
+    }
+
     public Long queueLength() {
         return redisTemplate.opsForList().size(QUEUE_KEY);
     }
@@ -0,0 +1,222 @@
+package com.quickbee.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quickbee.backend.security.SecurityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * {@code Idempotency-Key} support for non-idempotent POSTs (order creation, payment order creation).
+ *
+ * The first request with a key claims {@code idem:<scope>:<userId>:<key>} in Redis (SET NX, short
+ * TTL) and runs; a 2xx response is stored under the same key for {@code idempotency.ttl-hours} and
+ * replayed to every retry. A duplicate that arrives while the first is still running waits for its
+ * result (same node: on the running call's future; other nodes: polling the key) instead of running
+ * again. Errors are not stored, so a failed request can be retried with the same key. Reusing a key
+ * with a different body is rejected with 422.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+    public static final String HEADER = "Idempotency-Key";
+    private static final String KEY_PREFIX = "idem:";
+    private static final int MAX_KEY_LENGTH = 128;
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration inFlightTtl;
+    private final long waitMillis;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Stored>> running = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder waited = new LongAdder();
+
+    public IdempotencyService(StringRedisTemplate redisTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.in-flight-ttl-seconds:30}") long inFlightTtlSeconds,
+                              @Value("${idempotency.wait-ms:10000}") long waitMillis) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.inFlightTtl = Duration.ofSeconds(inFlightTtlSeconds);
+        this.waitMillis = waitMillis;
+    }
+
+    /**
+     * Runs {@code action} at most once per (scope, current user, key) and replays its response.
+     * Without a key the action simply runs.
+     */
+    public ResponseEntity<?> execute(String scope, String key, Object request, Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) return action.get();
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of("error", HEADER + " is longer than " + MAX_KEY_LENGTH));
+        }
+        String redisKey = KEY_PREFIX + scope + ":" + SecurityUtils.currentUserId() + ":" + key;
+        String fingerprint = fingerprint(request);
+
+        long deadline = System.currentTimeMillis() + waitMillis;
+        long backoff = 20;
+        while (true) {
+            Optional<Boolean> claimed = claim(redisKey, fingerprint);
+            if (claimed.isEmpty()) return action.get(); // Redis unavailable: availability over deduplication
+            if (claimed.get()) return run(redisKey, fingerprint, action);
+
+            Stored stored = read(redisKey);
+            if (stored != null && !stored.fingerprint().equals(fingerprint)) {
+                return ResponseEntity.unprocessableEntity()
+                        .body(Map.of("error", HEADER + " was already used with a different request"));
+            }
+            if (stored != null && stored.done()) {
+                replayed.increment();
+                return replay(stored);
+            }
+            if (stored == null) continue; // the first attempt failed and released the key: claim again
+
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "A request with this " + HEADER + " is still being processed"));
+            }
+            waited.increment();
+            CompletableFuture<Stored> local = running.get(redisKey);
+            try {
+                if (local != null) {
+                    local.get(left, TimeUnit.MILLISECONDS); // then re-read what it stored
+                } else {
+                    Thread.sleep(Math.min(backoff, left));
+                    backoff = Math.min(backoff * 2, 200);
+                }
+            } catch (TimeoutException | java.util.concurrent.ExecutionException ignored) {
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("executed", executed.sum());
+        out.put("replayed", replayed.sum());
+        out.put("waited", waited.sum());
+        return out;
+    }
+
+    /* ========= Internals ========= */
+
+    private ResponseEntity<?> run(String redisKey, String fingerprint, Supplier<ResponseEntity<?>> action) {
+        CompletableFuture<Stored> done = new CompletableFuture<>();
+        running.put(redisKey, done);
+        executed.increment();
+        Stored stored = null;
+        try {
+            ResponseEntity<?> response = action.get();
+            if (response.getStatusCode().is2xxSuccessful()) {
+                stored = new Stored(true, fingerprint, response.getStatusCode().value(), toJson(response.getBody()));
+                write(redisKey, stored, ttl);
+            } else {
+                release(redisKey);
+            }
+            return response;
+        } catch (RuntimeException ex) {
+            release(redisKey);
+            throw ex;
+        } finally {
+            running.remove(redisKey, done);
+            done.complete(stored);
+        }
+    }
+
+    // empty: Redis is down
+    private Optional<Boolean> claim(String redisKey, String fingerprint) {
+        try {
+            Boolean ok = redisTemplate.opsForValue().setIfAbsent(redisKey,
+                    toJson(new Stored(false, fingerprint, 0, null)), inFlightTtl);
+            return Optional.of(Boolean.TRUE.equals(ok));
+        } catch (Exception ex) {
+            log.warn("Idempotency check skipped, Redis unavailable: {}", ex.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Stored read(String redisKey) {
+        String json = redisTemplate.opsForValue().get(redisKey);
+        if (json == null) return null;
+        try {
+            return objectMapper.readValue(json, Stored.class);
+        } catch (JsonProcessingException ex) {
+            return null;
+        }
+    }
+
+    private void write(String redisKey, Stored stored, Duration expiry) {
+        try {
+            redisTemplate.opsForValue().set(redisKey, toJson(stored), expiry);
+        } catch (Exception ex) {
+            log.error("Failed to store idempotent response for {}: {}", redisKey, ex.getMessage());
+        }
+    }
+
+    private void release(String redisKey) {
+        try {
+            redisTemplate.delete(redisKey);
+        } catch (Exception ex) {
+            // the in-flight marker expires on its own
+            log.warn("Failed to release idempotency key {}: {}", redisKey, ex.getMessage());
+        }
+    }
+
+    private ResponseEntity<?> replay(Stored stored) {
+        return ResponseEntity.status(stored.status())
+                .header("Idempotent-Replayed", "true")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(stored.body());
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(toJson(request).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private String toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize idempotent response", ex);
+        }
+    }
+
+    // in-flight marker (done = false) or the stored response
+    private record Stored(boolean done, String fingerprint, int status, String body) {}
+}
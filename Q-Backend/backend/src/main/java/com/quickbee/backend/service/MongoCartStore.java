@@ -0,0 +1,240 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.model.Cart;
+import com.quickbee.backend.model.CartItem;
+import com.quickbee.backend.model.Product;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Carts stored directly in the carts collection. Every mutation is one targeted findAndModify
+ * (positional $inc/$set, $push, $pull, totals by $inc) whose returnNew document is the result.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "mongo", matchIfMissing = true)
+public class MongoCartStore implements CartStore {
+
+    private static final FindAndModifyOptions RETURN_NEW = FindAndModifyOptions.options().returnNew(true);
+    private static final int MAX_CAS_ATTEMPTS = 5;
+
+    private final MongoTemplate mongoTemplate;
+
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder mongoWrites = new LongAdder();
+
+    public MongoCartStore(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public Cart get(String userId) {
+        Cart cart = mongoTemplate.findOne(new Query(Criteria.where("userId").is(userId)), Cart.class);
+        if (cart != null) return cart;
+        Cart empty = new Cart();
+        empty.setUserId(userId);
+        return empty;
+    }
+
+    @Override
+    public Cart addItem(String userId, Product product, int qty, int maxQty) {
+        mutations.increment();
+        double price = priceOf(product);
+
+        // 1) line exists at the current price and stays within the cap: positional $inc
+        Query existing = new Query(Criteria.where("userId").is(userId).and("items").elemMatch(
+                Criteria.where("productId").is(product.getId()).and("price").is(price).and("qty").lte(maxQty - qty)));
+        Update inc = touch(new Update()
+                .inc("items.$.qty", qty)
+                .set("items.$.name", product.getName())
+                .set("items.$.imageUrl", product.getImageUrl())
+                .inc("totalItems", qty)
+                .inc("subtotal", price * qty));
+        Cart cart = write(existing, inc, RETURN_NEW);
+        if (cart != null) return cart;
+
+        // 2) new line: $push (kept sorted by name), creating the cart if needed
+        cart = pushLine(userId, product, qty);
+        if (cart != null) return cart;
+
+        // 3) line exists but price changed or cap reached: compare-and-set on the line
+        cart = casLine(userId, product.getId(), product, oldQty -> Math.min(oldQty + qty, maxQty));
+        if (cart == null) cart = pushLine(userId, product, qty); // removed concurrently
+        if (cart == null) throw conflict();
+        return cart;
+    }
+
+    @Override
+    public Cart setItem(String userId, String productId, Product product, int qty) {
+        mutations.increment();
+        return casLine(userId, productId, product, oldQty -> qty);
+    }
+
+    @Override
+    public Cart clear(String userId) {
+        mutations.increment();
+        Update u = touch(new Update().set("items", new ArrayList<>()).set("subtotal", 0.0).set("totalItems", 0));
+        return write(new Query(Criteria.where("userId").is(userId)), u,
+                FindAndModifyOptions.options().returnNew(true).upsert(true));
+    }
+
+    @Override
+    public Cart apply(String userId, List<LineOp> ops) {
+        mutations.increment();
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            Cart current = mongoTemplate.findOne(new Query(Criteria.where("userId").is(userId)), Cart.class);
+            Long version = current == null ? null : current.getVersion();
+
+            Map<String, CartItem> lines = new LinkedHashMap<>();
+            if (current != null && current.getItems() != null) {
+                current.getItems().forEach(i -> lines.put(i.getProductId(), i));
+            }
+            for (LineOp op : ops) applyOp(lines, op);
+
+            List<CartItem> items = new ArrayList<>(lines.values());
+            items.sort(Comparator.comparing(i -> i.getName() == null ? "" : i.getName()));
+            double subtotal = 0.0;
+            int totalItems = 0;
+            for (CartItem i : items) {
+                subtotal += i.getPrice() * i.getQty();
+                totalItems += i.getQty();
+            }
+
+            // whole-cart compare-and-set on the version every mutation bumps (missing: new or pre-version cart)
+            Criteria sameVersion = version == null ? Criteria.where("version").exists(false) : Criteria.where("version").is(version);
+            Query q = new Query(Criteria.where("userId").is(userId).andOperator(sameVersion));
+            Update u = touch(new Update().set("items", items).set("subtotal", subtotal).set("totalItems", totalItems));
+            try {
+                Cart cart = write(q, u, FindAndModifyOptions.options().returnNew(true).upsert(current == null));
+                if (cart != null) return cart;
+            } catch (DuplicateKeyException ex) {
+                // cart created concurrently: retry against it
+            }
+        }
+        throw conflict();
+    }
+
+    @Override
+    public void flush(String userId) {
+        // every mutation is already in Mongo
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("store", "mongo");
+        out.put("mutations", mutations.sum());
+        out.put("mongoWrites", mongoWrites.sum());
+        return out;
+    }
+
+    /* ========= Atomic line updates ========= */
+
+    private static void applyOp(Map<String, CartItem> lines, LineOp op) {
+        CartItem line = lines.get(op.productId());
+        int qty = op.kind() == LineOp.Kind.ADD
+                ? Math.min((line == null ? 0 : line.getQty()) + op.qty(), op.maxQty())
+                : op.qty();
+        if (qty <= 0) {
+            lines.remove(op.productId());
+        } else if (op.product() != null) {
+            Product p = op.product();
+            lines.put(op.productId(), new CartItem(p.getId(), p.getName(), p.getImageUrl(), priceOf(p), qty));
+        } else if (line != null) {
+            line.setQty(qty);
+        }
+    }
+
+    // $push a new line unless the product is already in the cart; upserts the cart itself
+    private Cart pushLine(String userId, Product product, int qty) {
+        double price = priceOf(product);
+        Query q = new Query(Criteria.where("userId").is(userId).and("items.productId").ne(product.getId()));
+        Update u = touch(new Update());
+        u.push("items").sort(Sort.by("name")).each(
+                new CartItem(product.getId(), product.getName(), product.getImageUrl(), price, qty));
+        u.inc("totalItems", qty).inc("subtotal", price * qty);
+        try {
+            return write(q, u, FindAndModifyOptions.options().returnNew(true).upsert(true));
+        } catch (DuplicateKeyException ex) {
+            return null; // cart exists and already holds this product (unique userId)
+        }
+    }
+
+    /**
+     * Sets a line's qty (0 pulls it) with totals adjusted by $inc in the same update. The update only
+     * applies if the line still has the qty/price we read, so concurrent changes are retried instead
+     * of lost. Returns null when the line is not in the cart.
+     */
+    private Cart casLine(String userId, String productId, Product product, IntUnaryOperator newQtyFor) {
+        for (int attempt = 0; attempt < MAX_CAS_ATTEMPTS; attempt++) {
+            CartItem line = findLine(userId, productId);
+            if (line == null) return null;
+
+            int oldQty = line.getQty();
+            double oldPrice = line.getPrice();
+            int newQty = Math.max(0, newQtyFor.applyAsInt(oldQty));
+            double newPrice = product != null ? priceOf(product) : oldPrice;
+
+            Query q = new Query(Criteria.where("userId").is(userId).and("items").elemMatch(
+                    Criteria.where("productId").is(line.getProductId()).and("qty").is(oldQty).and("price").is(oldPrice)));
+            Update u = touch(new Update());
+            if (newQty == 0) {
+                u.pull("items", new Document("productId", line.getProductId()));
+            } else {
+                u.set("items.$.qty", newQty).set("items.$.price", newPrice);
+                if (product != null) {
+                    u.set("items.$.name", product.getName()).set("items.$.imageUrl", product.getImageUrl());
+                }
+            }
+            u.inc("totalItems", newQty - oldQty).inc("subtotal", newQty * newPrice - oldQty * oldPrice);
+
+            Cart cart = write(q, u, RETURN_NEW);
+            if (cart != null) return cart;
+        }
+        throw conflict();
+    }
+
+    // only the matching line is read (positional $elemMatch projection)
+    private CartItem findLine(String userId, String productId) {
+        Query q = new Query(Criteria.where("userId").is(userId));
+        q.fields().elemMatch("items", Criteria.where("productId").is(productId));
+        Cart cart = mongoTemplate.findOne(q, Cart.class);
+        if (cart == null || cart.getItems() == null || cart.getItems().isEmpty()) return null;
+        return cart.getItems().get(0);
+    }
+
+    private Cart write(Query q, Update u, FindAndModifyOptions opts) {
+        mongoWrites.increment();
+        return mongoTemplate.findAndModify(q, u, opts, Cart.class);
+    }
+
+    private static Update touch(Update u) {
+        Instant now = Instant.now();
+        return u.set("updatedAt", now).setOnInsert("createdAt", now).inc("version", 1);
+    }
+
+    private static double priceOf(Product product) {
+        return product.getPrice() == null ? 0.0 : product.getPrice();
+    }
+
+    private static OptimisticLockingFailureException conflict() {
+        return new OptimisticLockingFailureException("Cart was modified concurrently, please retry");
+    }
+}
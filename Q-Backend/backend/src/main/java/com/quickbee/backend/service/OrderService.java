@@ -1,51 +1,67 @@
 package com.quickbee.backend.service;
 
 import com.quickbee.backend.dto.CreateOrderRequest;
+import com.quickbee.backend.dto.CursorPage;
 import com.quickbee.backend.dto.OrderItemResponse;
 import com.quickbee.backend.dto.OrderResponse;
+import com.quickbee.backend.dto.OrderSummaryResponse;
 import com.quickbee.backend.exception.ResourceNotFoundException;
 import com.quickbee.backend.model.*;
 import com.quickbee.backend.model.enums.OrderStatus;
 import com.quickbee.backend.repository.*;
+import com.quickbee.backend.security.SecurityUtils;
+import com.quickbee.backend.util.KeysetCursor;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
 import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
-import org.springframework.data.mongodb.core.query.Update;
-import org.springframework.security.core.Authentication;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Service
 public class OrderService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+
     private final OrderRepository orderRepo;
     private final CartRepository cartRepo;
-    private final ProductRepository productRepo;
     private final AddressRepository addressRepo;
-    private final UserRepository userRepo;
+    private final ProductSuggestIndex suggestIndex;
+    private final CartStore cartStore;
+    private final ProductBatchLoader productLoader;
+    private final StockDeductionService stockDeduction;
     private final MongoTemplate mongoTemplate;
 
     private static final double DELIVERY_FEE_FLAT = 19.0; // adjust as needed
+    private static final int MAX_HISTORY_PAGE = 50;
 
     public OrderService(OrderRepository orderRepo,
                         CartRepository cartRepo,
-                        ProductRepository productRepo,
                         AddressRepository addressRepo,
-                        UserRepository userRepo,
+                        ProductSuggestIndex suggestIndex,
+                        CartStore cartStore,
+                        ProductBatchLoader productLoader,
+                        StockDeductionService stockDeduction,
                         MongoTemplate mongoTemplate) {
         this.orderRepo = orderRepo;
         this.cartRepo = cartRepo;
-        this.productRepo = productRepo;
         this.addressRepo = addressRepo;
-        this.userRepo = userRepo;
+        this.suggestIndex = suggestIndex;
+        this.cartStore = cartStore;
+        this.productLoader = productLoader;
+        this.stockDeduction = stockDeduction;
         this.mongoTemplate = mongoTemplate;
     }
 
@@ -55,7 +71,8 @@ public class OrderService {
     public OrderResponse createOrder(CreateOrderRequest req) {
         String userId = getCurrentUserId();
 
-        // 1) Load cart
+        // 1) Load cart (a write-behind cart store must reach Mongo first)
+        cartStore.flush(userId);
         Cart cart = cartRepo.findByUserId(userId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart not found"));
         if (cart.getItems() == null || cart.getItems().isEmpty()) {
@@ -68,12 +85,12 @@ public class OrderService {
 
         // 3) Re-check stock & prepare shortages
         List<Shortage> shortages = new ArrayList<>();
-        Map<String, Product> productMap = new HashMap<>();
+        Map<String, Product> productMap = productLoader.loadFresh(
+                cart.getItems().stream().map(CartItem::getProductId).toList()); // one query for the whole cart
 
         for (CartItem ci : cart.getItems()) {
-            Product p = productRepo.findById(ci.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product not found: " + ci.getProductId()));
-            productMap.put(p.getId(), p);
+            Product p = productMap.get(ci.getProductId());
+            if (p == null) throw new ResourceNotFoundException("Product not found: " + ci.getProductId());
             int stock = p.getStockQuantity() == null ? 0 : p.getStockQuantity();
             if (ci.getQty() > stock) {
                 shortages.add(new Shortage(p.getId(), ci.getQty(), stock));
@@ -83,31 +100,13 @@ public class OrderService {
             throw new InsufficientStockException(shortages);
         }
 
-        // 4) Deduct stock atomically per item; keep track for rollback if needed
-        List<Deducted> deducted = new ArrayList<>();
+        // 4) Reserve stock for all items in one journaled bulk write (all or nothing)
+        String orderId = new ObjectId().toHexString(); // known up front so crash recovery can find the order
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        cart.getItems().forEach(ci -> lines.merge(ci.getProductId(), ci.getQty(), Integer::sum));
+        String stockJournalId = stockDeduction.deduct(orderId, lines);
+        Order saved;
         try {
-            for (CartItem ci : cart.getItems()) {
-                String pid = ci.getProductId();
-                int qty = ci.getQty();
-
-                Query q = new Query(Criteria.where("_id").is(pid)
-                        .and("stockQuantity").gte(qty));
-                Update u = new Update().inc("stockQuantity", -qty);
-
-                FindAndModifyOptions opts = FindAndModifyOptions.options().returnNew(true);
-                Product updated = mongoTemplate.findAndModify(q, u, opts, Product.class);
-
-                if (updated == null) {
-                    // could not deduct for this item -> rollback previous and fail
-                    rollbackDeductions(deducted);
-                    throw new InsufficientStockException(
-                            List.of(new Shortage(pid, qty, productMap.get(pid).getStockQuantity()))
-                    );
-                } else {
-                    deducted.add(new Deducted(pid, qty));
-                }
-            }
-
             // 5) Build order snapshot
             List<OrderItem> orderItems = cart.getItems().stream().map(ci -> {
                 Product p = productMap.get(ci.getProductId());
@@ -135,10 +134,14 @@ public class OrderService {
                     safe(getField(address, "line2")),
                     safe(getField(address, "city")),
                     safe(getField(address, "state")),
-                    safe(getField(address, "pincode"))
+                    safe(getField(address, "pincode")),
+                    address.getLat(),
+                    address.getLng()
             );
 
             Order order = new Order();
+            order.setId(orderId);
+            order.setCreatedAt(Instant.now()); // id is pre-assigned, so auditing treats the order as existing
             order.setUserId(userId);
             order.setAddressId(address.getId());
             order.setAddress(snap);
@@ -148,21 +151,25 @@ public class OrderService {
             order.setTotal(total);
             order.setStatus(OrderStatus.PENDING);
 
-            Order saved = orderRepo.save(order);
-
-            // 6) Clear cart
-            cart.getItems().clear();
-            cart.setSubtotal(0.0);
-            cart.setTotalItems(0);
-            cartRepo.save(cart);
-
-            return toResponse(saved);
-
+            saved = orderRepo.save(order);
         } catch (RuntimeException ex) {
-            // Safety: rollback stock if we failed after some deductions
-            rollbackDeductions(deducted);
+            // Safety: give the stock back if the order could not be created
+            stockDeduction.rollback(stockJournalId);
             throw ex;
         }
+
+        // the order exists from here on: hold its stock until payment; a failure here is settled by journal recovery
+        try {
+            stockDeduction.reserve(stockJournalId);
+        } catch (RuntimeException ex) {
+            log.error("Stock reservation failed for order {}, left to recovery: {}", saved.getId(), ex.getMessage());
+        }
+        saved.getItems().forEach(oi -> suggestIndex.recordSale(oi.getProductId(), oi.getQty())); // typeahead popularity
+
+        // 6) Clear cart
+        cartStore.clear(userId);
+
+        return toResponse(saved);
     }
 
     /* ================= Queries ================= */
@@ -173,6 +180,57 @@ public class OrderService {
                 .map(this::toResponse);
     }
 
+    /** Order history, newest first: keyset on (createdAt, _id), summary fields only. */
+    public CursorPage<OrderSummaryResponse> scrollMyOrders(String cursor, int size) {
+        String userId = getCurrentUserId();
+        size = Math.max(1, Math.min(size, MAX_HISTORY_PAGE));
+
+        List<Criteria> and = new ArrayList<>(List.of(Criteria.where("userId").is(userId)));
+        if (cursor != null && !cursor.isBlank()) {
+            List<Object> after = KeysetCursor.decode(cursor);
+            if (after.size() != 3 || !"orders".equals(after.get(0))
+                    || (after.get(1) != null && !(after.get(1) instanceof Instant))
+                    || !(after.get(2) instanceof String id) || !ObjectId.isValid(id)) {
+                throw new IllegalArgumentException("Cursor does not match this listing");
+            }
+            Instant createdAt = (Instant) after.get(1);
+            Criteria sameTimeOlderId = new Criteria().andOperator(
+                    Criteria.where("createdAt").is(createdAt), Criteria.where("_id").lt(new ObjectId(id)));
+            and.add(createdAt == null
+                    ? sameTimeOlderId
+                    : new Criteria().orOperator(Criteria.where("createdAt").lt(createdAt), sameTimeOlderId,
+                            Criteria.where("createdAt").is(null)));
+        }
+
+        // match + sort + limit walk the {userId, createdAt, _id} index; only the summary is projected
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().andOperator(and)),
+                Aggregation.sort(Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "_id"))),
+                Aggregation.limit(size + 1), // one extra row tells us whether there is a next slice
+                Aggregation.project("status", "total", "createdAt")
+                        .and(AccumulatorOperators.Sum.sumOf("items.qty")).as("itemCount")
+                        .and(ArrayOperators.ArrayElemAt.arrayOf("items.imageUrl").elementAt(0)).as("thumbnailUrl"));
+        List<Document> rows = new ArrayList<>(mongoTemplate.aggregate(agg, Order.class, Document.class).getMappedResults());
+
+        boolean hasNext = rows.size() > size;
+        if (hasNext) rows = rows.subList(0, size);
+        List<OrderSummaryResponse> items = rows.stream().map(d -> new OrderSummaryResponse(
+                d.getObjectId("_id").toHexString(),
+                d.getString("status") == null ? null : OrderStatus.valueOf(d.getString("status")),
+                d.get("total", Number.class) == null ? null : d.get("total", Number.class).doubleValue(),
+                d.get("itemCount", Number.class) == null ? 0 : d.get("itemCount", Number.class).intValue(),
+                d.getString("thumbnailUrl"),
+                d.getDate("createdAt") == null ? null : d.getDate("createdAt").toInstant()
+        )).toList();
+
+        String next = null;
+        if (hasNext) {
+            OrderSummaryResponse last = items.get(items.size() - 1);
+            next = KeysetCursor.encode("orders", last.getCreatedAt(), last.getId());
+        }
+        return new CursorPage<>(items, next, hasNext);
+    }
+
     public OrderResponse getOrderById(String id) {
         String userId = getCurrentUserId();
         Order order = orderRepo.findById(id)
@@ -190,25 +248,12 @@ public class OrderService {
     /* ================= Helpers ================= */
 
     private String getCurrentUserId() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) throw new IllegalStateException("Unauthenticated");
-        String email = (auth.getPrincipal() instanceof UserDetails ud) ? ud.getUsername() : String.valueOf(auth.getPrincipal());
-        User u = userRepo.findByEmail(email).orElseThrow(() -> new ResourceNotFoundException("User not found: " + email));
-        return u.getId();
+        // userId comes straight from the verified JWT claims (no users lookup)
+        return SecurityUtils.currentUserId();
     }
 
     private boolean isCurrentUserAdmin() {
-        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
-        if (auth == null) return false;
-        return auth.getAuthorities().stream().anyMatch(a -> "ROLE_ADMIN".equals(a.getAuthority()));
-    }
-
-    private void rollbackDeductions(List<Deducted> deducted) {
-        for (Deducted d : deducted) {
-            Query q = new Query(Criteria.where("_id").is(d.productId));
-            Update u = new Update().inc("stockQuantity", d.qty);
-            mongoTemplate.findAndModify(q, u, FindAndModifyOptions.options().returnNew(true), Product.class);
-        }
+        return SecurityUtils.isCurrentUserAdmin();
     }
 
     private OrderResponse toResponse(Order o) {
@@ -262,7 +307,6 @@ public class OrderService {
     private double round2(double v) { return Math.round(v * 100.0) / 100.0; }
 
     public record Shortage(String productId, int requested, Integer available) {}
-    private record Deducted(String productId, int qty) {}
 
     public static class InsufficientStockException extends RuntimeException {
         private final List<Shortage> items;
@@ -0,0 +1,262 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.model.User;
+import com.quickbee.backend.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.GeoResults;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.geo.Point;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoLocation;
+import org.springframework.data.redis.connection.RedisGeoCommands.GeoSearchCommandArgs;
+import org.springframework.data.redis.domain.geo.GeoReference;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Locations of the delivery partners that can take an order right now, in the Redis GEO set
+ * {@value #KEY} (a sorted set keyed by geohash), shared by all nodes.
+ *
+ * {@link #nearest} searches expanding rings ({@code dispatch.radius-km}) around a point and returns
+ * the closest partners first. Each GEOSEARCH only visits the geohash cells covering its ring, so its
+ * cost depends on how many partners are nearby, not on the size of the fleet.
+ *
+ * A partner is added when they go available (or are freed after a delivery) and removed when they go
+ * offline or take an order. The set is only a candidate list: dispatch still claims the partner with a
+ * conditional update, and an entry that fails that claim is dropped. It is re-seeded from Mongo at startup.
+ *
+ * Location heartbeats ({@link PartnerLocationService}) move indexed partners in batches and stamp them
+ * in {@value #SEEN_KEY}. A partner silent for {@code partners.liveness-seconds} is taken out of the set
+ * and parked in {@value #STALE_KEY}; their next heartbeat puts them back. A partner who goes available
+ * before reporting any location is parked there too, so their first heartbeat places them. Heartbeats
+ * never add a partner who is not available (busy or offline partners are in neither set).
+ */
+@Component
+public class PartnerGeoIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PartnerGeoIndex.class);
+    private static final String KEY = "partners:available";
+    private static final String SEEN_KEY = "partners:seen";   // partner -> last heartbeat (ms)
+    private static final String STALE_KEY = "partners:stale"; // available, but dropped for silence
+
+    // KEYS: geo, seen, stale; ARGV: (id, lng, lat, seenAtMs)*
+    private static final RedisScript<Long> HEARTBEATS = new DefaultRedisScript<>("""
+            for i = 1, #ARGV, 4 do
+              local id = ARGV[i]
+              if redis.call('SREM', KEYS[3], id) == 1 then
+                redis.call('GEOADD', KEYS[1], ARGV[i + 1], ARGV[i + 2], id)
+              else
+                redis.call('GEOADD', KEYS[1], 'XX', ARGV[i + 1], ARGV[i + 2], id)
+              end
+              redis.call('ZADD', KEYS[2], 'GT', ARGV[i + 3], id)
+            end
+            return #ARGV / 4
+            """, Long.class);
+
+    // KEYS: geo, seen, stale; ARGV: cutoffMs -> partners dropped from the geo set
+    private static final RedisScript<Long> SWEEP = new DefaultRedisScript<>("""
+            local silent = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1])
+            local dropped = 0
+            for _, id in ipairs(silent) do
+              redis.call('ZREM', KEYS[2], id)
+              if redis.call('ZREM', KEYS[1], id) == 1 then
+                redis.call('SADD', KEYS[3], id)
+                dropped = dropped + 1
+              end
+            end
+            return dropped
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final UserRepository userRepository;
+    private final double[] ringsKm;
+    private final Duration liveness;
+
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder ringsSearched = new LongAdder();
+    private final LongAdder searchMicros = new LongAdder();
+    private final AtomicLong maxSearchMicros = new AtomicLong();
+    private final LongAdder silentDropped = new LongAdder();
+
+    public PartnerGeoIndex(StringRedisTemplate redisTemplate,
+                           UserRepository userRepository,
+                           @Value("${dispatch.radius-km:2,4,8,16}") double[] ringsKm,
+                           @Value("${partners.liveness-seconds:30}") long livenessSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.userRepository = userRepository;
+        this.ringsKm = ringsKm.clone();
+        Arrays.sort(this.ringsKm);
+        this.liveness = Duration.ofSeconds(livenessSeconds);
+    }
+
+    /* ========= Maintenance ========= */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        // upsert only: other nodes keep updating the set meanwhile, stale entries fail their claim
+        try {
+            int n = 0;
+            for (User p : userRepository.findByIsDriverTrueAndVerifiedTrueAndOnlineTrue()) {
+                if (p.getCurrentLat() == null || p.getCurrentLng() == null) {
+                    redisTemplate.opsForSet().add(STALE_KEY, p.getId()); // placed by their first heartbeat
+                    continue;
+                }
+                redisTemplate.opsForGeo().add(KEY, new Point(p.getCurrentLng(), p.getCurrentLat()), p.getId());
+                n++;
+            }
+            log.info("Partner geo index: {} available partners with a location", n);
+        } catch (Exception ex) {
+            log.warn("Partner geo index not seeded, Redis unavailable: {}", ex.getMessage());
+        }
+    }
+
+    /** Adds or moves an available partner; one without a location waits for their first heartbeat. */
+    public boolean put(String partnerId, Double lat, Double lng) {
+        if (lat == null || lng == null) {
+            try {
+                redisTemplate.opsForGeo().remove(KEY, partnerId);
+                redisTemplate.opsForSet().add(STALE_KEY, partnerId);
+            } catch (Exception ex) {
+                log.warn("Failed to park partner {} until their first heartbeat: {}", partnerId, ex.getMessage());
+            }
+            return false;
+        }
+        try {
+            redisTemplate.opsForGeo().add(KEY, new Point(lng, lat), partnerId);
+            return true;
+        } catch (Exception ex) {
+            log.warn("Failed to index partner {} location: {}", partnerId, ex.getMessage());
+            return false;
+        }
+    }
+
+    public void remove(String partnerId) {
+        try {
+            redisTemplate.opsForGeo().remove(KEY, partnerId);
+            redisTemplate.opsForSet().remove(STALE_KEY, partnerId); // so a heartbeat won't bring them back
+        } catch (Exception ex) {
+            log.warn("Failed to drop partner {} from the geo index: {}", partnerId, ex.getMessage());
+        }
+    }
+
+    /**
+     * Applies a batch of heartbeats in one round trip: moves the partners that are in the set, returns
+     * the ones dropped for silence, and refreshes everyone's liveness.
+     */
+    public void applyHeartbeats(List<PartnerLocationService.Position> batch) {
+        if (batch.isEmpty()) return;
+        String[] args = new String[batch.size() * 4];
+        int i = 0;
+        for (PartnerLocationService.Position p : batch) {
+            args[i++] = p.partnerId();
+            args[i++] = Double.toString(p.lng());
+            args[i++] = Double.toString(p.lat());
+            args[i++] = Long.toString(p.at());
+        }
+        redisTemplate.execute(HEARTBEATS, List.of(KEY, SEEN_KEY, STALE_KEY), (Object[]) args);
+    }
+
+    // partners with no heartbeat within the liveness window leave the dispatch set (any node may run this)
+    @Scheduled(fixedDelayString = "${partners.liveness-sweep-ms:5000}")
+    public void dropSilent() {
+        try {
+            long cutoff = System.currentTimeMillis() - liveness.toMillis();
+            Long n = redisTemplate.execute(SWEEP, List.of(KEY, SEEN_KEY, STALE_KEY), Long.toString(cutoff));
+            if (n != null && n > 0) {
+                silentDropped.add(n);
+                log.info("Partner geo index: {} silent partners dropped", n);
+            }
+        } catch (Exception ex) {
+            log.warn("Partner liveness sweep skipped, Redis unavailable: {}", ex.getMessage());
+        }
+    }
+
+    /* ========= Queries ========= */
+
+    /**
+     * Up to {@code limit} available partners nearest to the point, closest first. Rings are searched
+     * from the smallest until one has {@code limit} partners; partners in {@code exclude} are skipped.
+     * Returns an empty list if nobody is within the largest ring or Redis is unavailable.
+     */
+    public List<String> nearest(double lat, double lng, int limit, Set<String> exclude) {
+        long start = System.nanoTime();
+        List<String> out = new ArrayList<>(limit);
+        try {
+            for (double km : ringsKm) {
+                ringsSearched.increment();
+                GeoResults<GeoLocation<String>> found = redisTemplate.opsForGeo().search(KEY,
+                        GeoReference.fromCoordinate(lng, lat),
+                        new Distance(km, Metrics.KILOMETERS),
+                        GeoSearchCommandArgs.newGeoSearchArgs().sortAscending().limit(limit + exclude.size()));
+                out.clear();
+                if (found != null) {
+                    for (GeoResult<GeoLocation<String>> r : found) {
+                        String id = r.getContent().getName();
+                        if (!exclude.contains(id) && out.size() < limit) out.add(id);
+                    }
+                }
+                if (out.size() >= limit) break;
+            }
+        } catch (Exception ex) {
+            log.warn("Partner geo search failed: {}", ex.getMessage());
+            out.clear();
+        }
+        long micros = (System.nanoTime() - start) / 1_000;
+        searches.increment();
+        searchMicros.add(micros);
+        maxSearchMicros.accumulateAndGet(micros, Math::max);
+        return out;
+    }
+
+    /**
+     * Up to {@code limit} available partners within the largest ring, closest first, with their
+     * distance in km. Used by batch dispatch to build its (sparse) cost matrix.
+     */
+    public Map<String, Double> within(double lat, double lng, int limit) {
+        Map<String, Double> out = new LinkedHashMap<>();
+        GeoResults<GeoLocation<String>> found = redisTemplate.opsForGeo().search(KEY,
+                GeoReference.fromCoordinate(lng, lat),
+                new Distance(maxRadiusKm(), Metrics.KILOMETERS),
+                GeoSearchCommandArgs.newGeoSearchArgs().includeDistance().sortAscending().limit(limit));
+        if (found != null) {
+            for (GeoResult<GeoLocation<String>> r : found) {
+                out.put(r.getContent().getName(), r.getDistance().getValue());
+            }
+        }
+        return out;
+    }
+
+    /** Radius of the largest search ring. */
+    public double maxRadiusKm() {
+        return ringsKm[ringsKm.length - 1];
+    }
+
+    public Map<String, Object> getStats() {
+        long n = searches.sum();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("searches", n);
+        out.put("avgRings", n == 0 ? 0 : (double) ringsSearched.sum() / n);
+        out.put("avgSearchMicros", n == 0 ? 0 : searchMicros.sum() / n);
+        out.put("maxSearchMicros", maxSearchMicros.get());
+        out.put("silentDropped", silentDropped.sum());
+        try {
+            out.put("indexed", redisTemplate.opsForZSet().zCard(KEY));
+        } catch (Exception ex) {
+            out.put("indexed", "unavailable");
+        }
+        return out;
+    }
+}
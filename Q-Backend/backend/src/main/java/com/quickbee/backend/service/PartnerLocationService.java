@@ -0,0 +1,156 @@
+package com.quickbee.backend.service;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.quickbee.backend.model.User;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Partner location heartbeats.
+ *
+ * A heartbeat only replaces the partner's latest {@link Position} in memory and marks it dirty for
+ * Redis and for Mongo: no I/O on the request path. A flusher pushes the dirty positions into the
+ * dispatch geo index ({@link PartnerGeoIndex}) every {@code partners.location.flush-ms} in one Lua
+ * call per batch, which also refreshes their liveness. A slower persister writes
+ * {@code currentLat/currentLng/lastSeen} to the users collection every
+ * {@code partners.location.persist-ms} in unordered bulkWrites of {@code $set}s, so any number of
+ * heartbeats per partner coalesce into one small update, conditional on {@code lastSeen} so an
+ * older position never overwrites a newer one.
+ */
+@Service
+public class PartnerLocationService {
+
+    private static final Logger log = LoggerFactory.getLogger(PartnerLocationService.class);
+    private static final int REDIS_BATCH = 1000;
+    private static final long TRACK_FOR_MS = 10 * 60_000L; // silent partners are forgotten locally after this
+    static final double MAX_GEO_LAT = 85.05112878;          // GEOADD rejects latitudes beyond this
+
+    /** Latest reported position of a partner; {@code at} is the epoch ms it was received. */
+    public record Position(String partnerId, double lat, double lng, long at) {}
+
+    private final PartnerGeoIndex geoIndex;
+    private final MongoTemplate mongoTemplate;
+    private final int persistBatchSize;
+
+    private final ConcurrentHashMap<String, Position> latest = new ConcurrentHashMap<>();
+    private final Set<String> dirtyRedis = ConcurrentHashMap.newKeySet();
+    private final Set<String> dirtyMongo = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder redisWrites = new LongAdder();
+    private final LongAdder mongoWrites = new LongAdder();
+
+    public PartnerLocationService(PartnerGeoIndex geoIndex,
+                                  MongoTemplate mongoTemplate,
+                                  @Value("${partners.location.persist-batch-size:1000}") int persistBatchSize) {
+        this.geoIndex = geoIndex;
+        this.mongoTemplate = mongoTemplate;
+        this.persistBatchSize = persistBatchSize;
+    }
+
+    public void heartbeat(String partnerId, double lat, double lng) {
+        // Redis GEO's limits, not the globe's: one out-of-range position would fail its whole flush batch
+        if (!(lat >= -MAX_GEO_LAT && lat <= MAX_GEO_LAT && lng >= -180 && lng <= 180)) {
+            throw new IllegalArgumentException("lat must be within [-" + MAX_GEO_LAT + ", " + MAX_GEO_LAT
+                    + "] and lng within [-180, 180]");
+        }
+        latest.put(partnerId, new Position(partnerId, lat, lng, System.currentTimeMillis()));
+        dirtyRedis.add(partnerId);
+        dirtyMongo.add(partnerId);
+        received.increment();
+    }
+
+    /** Latest position reported to this node, if any. */
+    public Optional<Position> lastKnown(String partnerId) {
+        return Optional.ofNullable(latest.get(partnerId));
+    }
+
+    @Scheduled(fixedDelayString = "${partners.location.flush-ms:250}")
+    public void flushToRedis() {
+        List<Position> batch = drain(dirtyRedis);
+        for (int from = 0; from < batch.size(); from += REDIS_BATCH) {
+            List<Position> chunk = batch.subList(from, Math.min(batch.size(), from + REDIS_BATCH));
+            try {
+                geoIndex.applyHeartbeats(chunk);
+                redisWrites.add(chunk.size());
+            } catch (Exception ex) {
+                // newer heartbeats will carry the position; liveness may lapse meanwhile
+                log.warn("Dropped {} partner positions, Redis unavailable: {}", chunk.size(), ex.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${partners.location.persist-ms:30000}")
+    public void persist() {
+        List<Position> batch = drain(dirtyMongo);
+        for (int from = 0; from < batch.size(); from += persistBatchSize) {
+            List<Position> chunk = batch.subList(from, Math.min(batch.size(), from + persistBatchSize));
+            BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, User.class);
+            for (Position p : chunk) {
+                Instant at = Instant.ofEpochMilli(p.at());
+                ops.updateOne(
+                        new Query(Criteria.where("_id").is(p.partnerId())
+                                .orOperator(Criteria.where("lastSeen").lt(at), Criteria.where("lastSeen").is(null))),
+                        new Update().set("currentLat", p.lat()).set("currentLng", p.lng()).set("lastSeen", at));
+            }
+            try {
+                BulkWriteResult result = ops.execute();
+                mongoWrites.add(result.getModifiedCount());
+            } catch (Exception ex) {
+                chunk.forEach(p -> dirtyMongo.add(p.partnerId())); // retried with the next persist
+                log.error("Failed to persist {} partner positions: {}", chunk.size(), ex.getMessage());
+            }
+        }
+        evictSilent();
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        persist();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("heartbeats", received.sum());
+        out.put("redisPositions", redisWrites.sum());
+        out.put("mongoUpdates", mongoWrites.sum());
+        out.put("tracked", latest.size());
+        out.put("pendingRedis", dirtyRedis.size());
+        out.put("pendingMongo", dirtyMongo.size());
+        return out;
+    }
+
+    /* ========= Internals ========= */
+
+    private List<Position> drain(Set<String> dirty) {
+        List<Position> out = new ArrayList<>(dirty.size());
+        Iterator<String> it = dirty.iterator();
+        while (it.hasNext()) {
+            String id = it.next();
+            it.remove(); // a heartbeat after this point marks it dirty again
+            Position p = latest.get(id);
+            if (p != null) out.add(p);
+        }
+        return out;
+    }
+
+    // positions of partners that stopped reporting are already persisted; don't keep them forever
+    private void evictSilent() {
+        long cutoff = System.currentTimeMillis() - TRACK_FOR_MS;
+        latest.values().removeIf(p -> p.at() < cutoff && !dirtyMongo.contains(p.partnerId()));
+    }
+}
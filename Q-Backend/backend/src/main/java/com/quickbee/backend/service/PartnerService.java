@@ -4,6 +4,7 @@ import com.quickbee.backend.model.User;
 import com.quickbee.backend.model.enums.PartnerStatus;
 import com.quickbee.backend.model.enums.Role;
 import com.quickbee.backend.repository.UserRepository;
+import com.quickbee.backend.security.UserCacheInvalidator;
 import org.springframework.stereotype.Service;
 import java.time.Instant;
 import java.util.Optional;
@@ -12,9 +13,14 @@ import java.util.Optional;
 public class PartnerService {
 
     private final UserRepository userRepository;
+    private final UserCacheInvalidator userCacheInvalidator;
+    private final PartnerGeoIndex partnerGeoIndex;
 
-    public PartnerService(UserRepository userRepository) {
+    public PartnerService(UserRepository userRepository, UserCacheInvalidator userCacheInvalidator,
+                          PartnerGeoIndex partnerGeoIndex) {
         this.userRepository = userRepository;
+        this.userCacheInvalidator = userCacheInvalidator;
+        this.partnerGeoIndex = partnerGeoIndex;
     }
 
     /**
@@ -41,6 +47,7 @@ public class PartnerService {
         user.setPartnerStatus(PartnerStatus.PENDING_VERIFICATION);
         user.setVerified(false);
         userRepository.save(user);
+        userCacheInvalidator.userChanged(user); // role changed -> drop cached auth state on all nodes
         return user;
     }
 
@@ -63,7 +70,9 @@ public class PartnerService {
             user.setVerified(false);
             user.setPartnerStatus(PartnerStatus.SUSPENDED); // or keep pending with rejection reason
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userCacheInvalidator.userChanged(saved);
+        return saved;
     }
 
     /**
@@ -91,6 +100,8 @@ public class PartnerService {
         } else {
             user.setPartnerStatus(PartnerStatus.ACTIVE); // or UNAVAILABLE if break
         }
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        if (available) partnerGeoIndex.put(userId, lat, lng); else partnerGeoIndex.remove(userId);
+        return saved;
     }
 }
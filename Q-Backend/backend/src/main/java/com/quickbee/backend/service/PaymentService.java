@@ -7,12 +7,12 @@ import com.quickbee.backend.dto.CreatePaymentResponse;
 import com.quickbee.backend.dto.VerifyPaymentRequest;
 import com.quickbee.backend.model.Order;
 import com.quickbee.backend.model.Payment;
-import com.quickbee.backend.model.User;
 import com.quickbee.backend.model.enums.OrderStatus;
 import com.quickbee.backend.model.enums.PaymentStatus;
 import com.quickbee.backend.repository.OrderRepository;
 import com.quickbee.backend.repository.PaymentRepository;
-import com.quickbee.backend.repository.UserRepository;
+import com.quickbee.backend.security.AuthenticatedUser;
+import com.quickbee.backend.security.SecurityUtils;
 import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
 import com.razorpay.Utils;
@@ -20,13 +20,16 @@ import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.Instant;
-import java.util.List;
 
 @Slf4j
 @Service
@@ -37,15 +40,19 @@ public class PaymentService {
     @Autowired
     private PaymentRepository paymentRepository;
     @Autowired
-    private UserRepository userRepository;
-    @Autowired
     private DeliveryQueueService deliveryQueueService;
 
     @Autowired
     private AssignmentService assignmentService;
 
     @Autowired
-    private UserService userService;
+    private StockDeductionService stockDeduction;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Value("${payments.verify-claim-seconds:120}")
+    private long verifyClaimSeconds;
 
     @Value("${app.dev.bypass-signature:false}")
     private boolean bypassSignature;
@@ -60,13 +67,12 @@ public class PaymentService {
         this.razorpayClient = new RazorpayClient(keyId, keySecret);
     }
 
-    private User getAuthenticatedUser() {
-        String userEmail = ((UserDetails) SecurityContextHolder.getContext().getAuthentication().getPrincipal()).getUsername();
-        return userRepository.findByEmail(userEmail).orElseThrow(() -> new RuntimeException("User not found"));
+    private AuthenticatedUser getAuthenticatedUser() {
+        return SecurityUtils.currentUser();
     }
 
     public CreatePaymentResponse createRazorpayOrder(CreatePaymentRequest request) throws RazorpayException {
-        User user = getAuthenticatedUser();
+        AuthenticatedUser user = getAuthenticatedUser();
         Order order = orderRepository.findById(request.getOurOrderId())
                 .orElseThrow(() -> new RuntimeException("Order not found with ID: " + request.getOurOrderId()));
 
@@ -99,16 +105,26 @@ public class PaymentService {
 
         Payment payment = paymentRepository.findByRazorpayOrderId(request.getRazorpay_order_id())
                 .orElseThrow(() -> new RuntimeException("Payment record not found"));
+        if (!payment.getUserId().equals(SecurityUtils.currentUserId())) {
+            throw new SecurityException("Access Denied: You do not own this payment");
+        }
 
         // idempotency: if payment already processed, return existing order
         if (payment.getStatus() == PaymentStatus.PAID) {
             return orderRepository.findById(payment.getOrderId())
                     .orElseThrow(() -> new RuntimeException("Order not found"));
         }
+        if (payment.getStatus() == PaymentStatus.REFUND_PENDING || payment.getStatus() == PaymentStatus.REFUNDED) {
+            throw new IllegalStateException("Items sold out while the payment was pending; the payment is refunded");
+        }
 
         Order order = orderRepository.findById(payment.getOrderId())
                 .orElseThrow(() -> new RuntimeException("Order not found"));
 
+        // one verify call at a time per payment, so overlapping retries never take the stock twice
+        if (!claim(payment)) {
+            throw new IllegalStateException("Payment verification is already in progress");
+        }
         try {
             boolean isSignatureValid;
             if (bypassSignature) {
@@ -125,6 +141,23 @@ public class PaymentService {
             }
 
             if (isSignatureValid) {
+                // reserved stock becomes sold (re-taken if the reservation expired meanwhile)
+                try {
+                    stockDeduction.confirm(order);
+                } catch (OrderService.InsufficientStockException ex) {
+                    // the money was taken: record that it is owed back before anything else can fail
+                    payment.setStatus(PaymentStatus.REFUND_PENDING);
+                    payment.setRazorpayPaymentId(request.getRazorpay_payment_id());
+                    payment.setRazorpaySignature(request.getRazorpay_signature());
+                    paymentRepository.save(payment);
+                    order.setStatus(OrderStatus.CANCELLED);
+                    orderRepository.save(order);
+                    log.error("Order {} paid after its reservation expired and stock ran out; refunding payment {}",
+                            order.getId(), request.getRazorpay_payment_id());
+                    refund(payment);
+                    throw new IllegalStateException("Items sold out while the payment was pending; the payment will be refunded");
+                }
+
                 // mark payment PAID
                 payment.setStatus(PaymentStatus.PAID);
                 payment.setRazorpayPaymentId(request.getRazorpay_payment_id());
@@ -144,14 +177,9 @@ public class PaymentService {
                     log.error("Failed to enqueue order {}: {}", order.getId(), e.getMessage(), e);
                 }
 
-                // optional immediate assignment attempt:
-                // find available partners (simple pool). userService.findAvailablePartners() should return partners who are online & verified.
+                // optional immediate assignment attempt: nearest available partners to the delivery address
                 try {
-                    List<User> availablePartners = userService.findAvailablePartners();
-                    for (User partner : availablePartners) {
-                        boolean assigned = assignmentService.tryAssignToPartner(partner.getId());
-                        if (assigned) break; // order assigned, stop trying
-                    }
+                    assignmentService.dispatch(order);
                 } catch (Exception e) {
                     // log but continue
                     log.error("Assignment attempt failed for order {}: {}", order.getId(), e.getMessage(), e);
@@ -160,12 +188,59 @@ public class PaymentService {
                 return order;
 
             } else {
-                payment.setStatus(PaymentStatus.FAILED);
-                paymentRepository.save(payment);
+                // not proof the payment failed (a tampered or garbled request looks the same): the
+                // payment stays PENDING for a valid retry, and the reservation expiry frees the stock
                 throw new RuntimeException("Payment verification failed: Invalid signature");
             }
         } catch (Exception e) {
+            unclaim(payment); // no-op once the payment reached PAID / REFUND_PENDING
             throw new RuntimeException("Payment verification failed: " + e.getMessage(), e);
         }
     }
+
+    // PENDING (or FAILED, or a claim left behind by a crashed call) -> VERIFYING
+    private boolean claim(Payment payment) {
+        Instant now = Instant.now();
+        Query q = new Query(Criteria.where("_id").is(payment.getId()).orOperator(
+                Criteria.where("status").in(PaymentStatus.PENDING, PaymentStatus.FAILED),
+                Criteria.where("status").is(PaymentStatus.VERIFYING)
+                        .and("updatedAt").lt(now.minus(Duration.ofSeconds(verifyClaimSeconds)))));
+        Update u = new Update().set("status", PaymentStatus.VERIFYING).set("updatedAt", now);
+        if (mongoTemplate.updateFirst(q, u, Payment.class).getModifiedCount() == 0) return false;
+        payment.setStatus(PaymentStatus.VERIFYING);
+        return true;
+    }
+
+    private void unclaim(Payment payment) {
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(payment.getId()).and("status").is(PaymentStatus.VERIFYING)),
+                new Update().set("status", PaymentStatus.PENDING).set("updatedAt", Instant.now()), Payment.class);
+    }
+
+    // refunds left pending by a failed Razorpay call (Razorpay rejects a refund beyond the captured amount)
+    @Scheduled(fixedDelayString = "${payments.refund-retry-ms:300000}")
+    public void retryPendingRefunds() {
+        for (Payment payment : paymentRepository.findByStatus(PaymentStatus.REFUND_PENDING)) {
+            refund(payment);
+        }
+    }
+
+    // full refund of a REFUND_PENDING payment; on failure it stays pending for the retry
+    private void refund(Payment payment) {
+        try {
+            JSONObject refundRequest = new JSONObject();
+            refundRequest.put("amount", (int) (payment.getAmount() * 100));
+            refundRequest.put("notes", new JSONObject().put("orderId", payment.getOrderId()));
+            com.razorpay.Refund refund = razorpayClient.payments.refund(payment.getRazorpayPaymentId(), refundRequest);
+
+            payment.setRazorpayRefundId(refund.get("id"));
+            payment.setStatus(PaymentStatus.REFUNDED);
+            paymentRepository.save(payment);
+            log.info("Payment {} for order {} refunded: {}", payment.getRazorpayPaymentId(), payment.getOrderId(),
+                    payment.getRazorpayRefundId());
+        } catch (Exception e) {
+            log.error("Refund of payment {} for order {} failed, will retry: {}",
+                    payment.getRazorpayPaymentId(), payment.getOrderId(), e.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.model.Product;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.*;
+
+/**
+ * Request-scoped product loader for paths that need many products at once (cart view, checkout).
+ *
+ * All ids of one call are resolved through {@link ProductCache}'s batch reads, so a request costs at
+ * most one Mongo $in query per call instead of one findById per item. Products are memoized for the
+ * rest of the request: a fresh (stock-sensitive) load also satisfies later catalog loads, but not the
+ * other way round. The Mongo query count of the request is logged and added to the cache stats.
+ */
+@Component
+@RequestScope
+public class ProductBatchLoader {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductBatchLoader.class);
+
+    private final ProductCache productCache;
+
+    private final Map<String, Optional<Product>> loaded = new HashMap<>();
+    private final Map<String, Optional<Product>> fresh = new HashMap<>();
+    private int mongoQueries;
+
+    public ProductBatchLoader(ProductCache productCache) {
+        this.productCache = productCache;
+    }
+
+    /** Catalog read of all ids; missing products are absent from the result. */
+    public Map<String, Product> load(Collection<String> ids) {
+        return resolve(ids, loaded, false);
+    }
+
+    /** Stock-sensitive read of all ids, see {@link ProductCache#getFresh(String)}. */
+    public Map<String, Product> loadFresh(Collection<String> ids) {
+        return resolve(ids, fresh, true);
+    }
+
+    /** Mongo queries issued by this request so far. */
+    public int mongoQueries() {
+        return mongoQueries;
+    }
+
+    @PreDestroy
+    void report() {
+        if (loaded.isEmpty() && fresh.isEmpty()) return;
+        productCache.recordRequestQueries(mongoQueries);
+        log.debug("Product batch loader: {} products, {} Mongo queries", loaded.size(), mongoQueries);
+    }
+
+    private Map<String, Product> resolve(Collection<String> ids, Map<String, Optional<Product>> memo, boolean stockSensitive) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (!memo.containsKey(id)) missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            ProductCache.Loaded batch = stockSensitive
+                    ? productCache.getAllFresh(missing)
+                    : productCache.getAll(missing);
+            mongoQueries += batch.mongoQueries();
+            for (String id : missing) {
+                Optional<Product> p = Optional.ofNullable(batch.products().get(id));
+                memo.put(id, p);
+                if (stockSensitive) loaded.put(id, p);
+            }
+        }
+
+        Map<String, Product> out = new LinkedHashMap<>(ids.size() * 2);
+        for (String id : ids) {
+            memo.get(id).ifPresent(p -> out.put(id, p));
+        }
+        return out;
+    }
+}
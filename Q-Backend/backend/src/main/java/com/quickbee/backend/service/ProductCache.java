@@ -0,0 +1,317 @@
+package com.quickbee.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.quickbee.backend.model.Product;
+import com.quickbee.backend.repository.ProductRepository;
+import com.quickbee.backend.util.CacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Read-through product cache: bounded local tier (Caffeine) in front of a shared Redis tier.
+ *
+ * - Concurrent misses for the same id share one Mongo load (no stampede on hot SKUs).
+ * - Writes call {@link #invalidate(String)}, which replaces the Redis copy with a short-lived
+ *   tombstone and broadcasts on {@value #CHANNEL} so every node drops its local copy. Loads only
+ *   write Redis if the key is absent, so a load that read Mongo before the write cannot put its
+ *   stale copy back while the tombstone lives ({@code catalog.cache.tombstone-ms}).
+ * - {@link #getFresh(String)} is for stock-sensitive reads: it only accepts a local copy younger
+ *   than {@code catalog.cache.fresh-max-age-ms}, otherwise it goes to Mongo.
+ *
+ * Returned products are shared instances and must be treated as read-only.
+ */
+@Component
+public class ProductCache implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCache.class);
+    public static final String CHANNEL = "catalog:product-invalidate";
+    private static final String KEY_PREFIX = "product:";
+    private static final String TOMBSTONE = "";
+
+    // KEYS: product keys; ARGV: tombstone ttl (ms)
+    private static final RedisScript<Long> INVALIDATE = new DefaultRedisScript<>("""
+            for _, k in ipairs(KEYS) do redis.call('SET', k, '', 'PX', ARGV[1]) end
+            return #KEYS
+            """, Long.class);
+
+    private final ProductRepository productRepo;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+
+    private final Cache<String, Entry> local;
+    private final Duration redisTtl;
+    private final long tombstoneMillis;
+    private final long freshMaxAgeMillis;
+
+    private final ConcurrentHashMap<String, CompletableFuture<Product>> inflight = new ConcurrentHashMap<>();
+    private final LongAdder redisHits = new LongAdder();
+    private final LongAdder mongoLoads = new LongAdder();
+    private final LongAdder freshReads = new LongAdder();
+    private final LongAdder freshLocalHits = new LongAdder();
+    private final LongAdder batchQueries = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private final LongAdder batchedRequestQueries = new LongAdder();
+    private final LongAccumulator maxRequestQueries = new LongAccumulator(Math::max, 0);
+
+    public ProductCache(ProductRepository productRepo,
+                        StringRedisTemplate redisTemplate,
+                        RedisMessageListenerContainer listenerContainer,
+                        ObjectMapper objectMapper,
+                        @Value("${catalog.cache.local-max-size:20000}") long localMaxSize,
+                        @Value("${catalog.cache.local-ttl-seconds:60}") long localTtlSeconds,
+                        @Value("${catalog.cache.redis-ttl-seconds:600}") long redisTtlSeconds,
+                        @Value("${catalog.cache.fresh-max-age-ms:1000}") long freshMaxAgeMillis,
+                        @Value("${catalog.cache.tombstone-ms:5000}") long tombstoneMillis) {
+        this.productRepo = productRepo;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.objectMapper = objectMapper;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(localTtlSeconds))
+                .recordStats()
+                .build();
+        this.redisTtl = Duration.ofSeconds(redisTtlSeconds);
+        this.freshMaxAgeMillis = freshMaxAgeMillis;
+        this.tombstoneMillis = tombstoneMillis;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    /* ========= Reads ========= */
+
+    /** Catalog read: local -> Redis -> Mongo. */
+    public Optional<Product> get(String id) {
+        Entry e = local.get(id, this::loadThroughRedis); // Caffeine coalesces concurrent loads per key
+        return Optional.ofNullable(e).map(Entry::product);
+    }
+
+    /** Stock-sensitive read: bounded staleness, bypasses the Redis tier. */
+    public Optional<Product> getFresh(String id) {
+        freshReads.increment();
+        Entry e = local.getIfPresent(id);
+        if (e != null && System.currentTimeMillis() - e.loadedAt() <= freshMaxAgeMillis) {
+            freshLocalHits.increment();
+            return Optional.of(e.product());
+        }
+        Product p = loadFromMongo(id);
+        if (p == null) {
+            local.invalidate(id);
+            return Optional.empty();
+        }
+        local.put(id, new Entry(p, System.currentTimeMillis()));
+        writeRedis(p);
+        return Optional.of(p);
+    }
+
+    /**
+     * Batch form of {@link #get(String)}: local hits, then one Redis MGET, then one Mongo $in query
+     * for whatever is left. Missing ids are absent from the result.
+     */
+    public Loaded getAll(Collection<String> ids) {
+        Set<String> wanted = new LinkedHashSet<>(ids);
+        Map<String, Product> out = new HashMap<>(wanted.size() * 2);
+        local.getAllPresent(wanted).forEach((id, e) -> out.put(id, e.product()));
+        wanted.removeAll(out.keySet());
+        if (wanted.isEmpty()) return new Loaded(out, 0);
+
+        long now = System.currentTimeMillis();
+        for (Product p : readRedis(wanted)) {
+            redisHits.increment();
+            local.put(p.getId(), new Entry(p, now));
+            out.put(p.getId(), p);
+            wanted.remove(p.getId());
+        }
+        if (wanted.isEmpty()) return new Loaded(out, 0);
+
+        for (Product p : loadAllFromMongo(wanted)) {
+            local.put(p.getId(), new Entry(p, now));
+            writeRedis(p);
+            out.put(p.getId(), p);
+        }
+        return new Loaded(out, 1);
+    }
+
+    /** Batch form of {@link #getFresh(String)}: fresh local hits, everything else in one Mongo $in query. */
+    public Loaded getAllFresh(Collection<String> ids) {
+        Set<String> wanted = new LinkedHashSet<>(ids);
+        Map<String, Product> out = new HashMap<>(wanted.size() * 2);
+        long now = System.currentTimeMillis();
+        freshReads.add(wanted.size());
+        local.getAllPresent(wanted).forEach((id, e) -> {
+            if (now - e.loadedAt() <= freshMaxAgeMillis) out.put(id, e.product());
+        });
+        freshLocalHits.add(out.size());
+        wanted.removeAll(out.keySet());
+        if (wanted.isEmpty()) return new Loaded(out, 0);
+
+        for (Product p : loadAllFromMongo(wanted)) {
+            local.put(p.getId(), new Entry(p, now));
+            writeRedis(p);
+            out.put(p.getId(), p);
+            wanted.remove(p.getId());
+        }
+        local.invalidateAll(wanted); // deleted products
+        return new Loaded(out, 1);
+    }
+
+    /** Result of a batch read; {@code mongoQueries} is 0 or 1. */
+    public record Loaded(Map<String, Product> products, int mongoQueries) {}
+
+    /* ========= Invalidation ========= */
+
+    public void invalidate(String id) {
+        local.invalidate(id);
+        try {
+            redisTemplate.execute(INVALIDATE, List.of(KEY_PREFIX + id), String.valueOf(tombstoneMillis));
+            redisTemplate.convertAndSend(CHANNEL, id);
+        } catch (Exception ex) {
+            // other nodes fall back to the local TTL
+            log.error("Failed to publish product invalidation for {}: {}", id, ex.getMessage());
+        }
+    }
+
+    /** Batch invalidation (bulk import): one Redis call and one broadcast for all ids. */
+    public void invalidateAll(Collection<String> ids) {
+        if (ids.isEmpty()) return;
+        local.invalidateAll(ids);
+        try {
+            redisTemplate.execute(INVALIDATE, ids.stream().map(id -> KEY_PREFIX + id).toList(),
+                    String.valueOf(tombstoneMillis));
+            redisTemplate.convertAndSend(CHANNEL, String.join(",", ids));
+        } catch (Exception ex) {
+            log.error("Failed to publish product invalidation for {} ids: {}", ids.size(), ex.getMessage());
+        }
+    }
+
+    // payload is one id or a comma-separated batch of ids
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        local.invalidateAll(Arrays.asList(body.split(",")));
+    }
+
+    /** Called by {@link ProductBatchLoader} at the end of each request that used it. */
+    void recordRequestQueries(int queries) {
+        batchedRequests.increment();
+        batchedRequestQueries.add(queries);
+        maxRequestQueries.accumulate(queries);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> out = CacheMetrics.snapshot(local);
+        long localHits = local.stats().hitCount();
+        long total = localHits + redisHits.sum() + mongoLoads.sum();
+        out.put("redisHits", redisHits.sum());
+        out.put("mongoLoads", mongoLoads.sum());
+        out.put("combinedHitRate", total == 0 ? 1.0 : (double) (localHits + redisHits.sum()) / total);
+        out.put("freshReads", freshReads.sum());
+        out.put("freshLocalHits", freshLocalHits.sum());
+        out.put("batchQueries", batchQueries.sum());
+        long requests = batchedRequests.sum();
+        out.put("batchedRequests", requests);
+        out.put("avgMongoQueriesPerRequest", requests == 0 ? 0.0 : (double) batchedRequestQueries.sum() / requests);
+        out.put("maxMongoQueriesPerRequest", maxRequestQueries.get());
+        return out;
+    }
+
+    /* ========= Internals ========= */
+
+    private Entry loadThroughRedis(String id) {
+        Product p = readRedis(id);
+        if (p != null) {
+            redisHits.increment();
+        } else {
+            p = loadFromMongo(id);
+            if (p == null) return null; // not cached: unknown ids keep going to Mongo
+            writeRedis(p);
+        }
+        return new Entry(p, System.currentTimeMillis());
+    }
+
+    // one Mongo round trip per id no matter how many threads miss at once
+    private Product loadFromMongo(String id) {
+        CompletableFuture<Product> mine = new CompletableFuture<>();
+        CompletableFuture<Product> existing = inflight.putIfAbsent(id, mine);
+        if (existing != null) return existing.join();
+        try {
+            mongoLoads.increment();
+            Product p = productRepo.findById(id).orElse(null);
+            mine.complete(p);
+            return p;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inflight.remove(id, mine);
+        }
+    }
+
+    private List<Product> loadAllFromMongo(Collection<String> ids) {
+        batchQueries.increment();
+        mongoLoads.add(ids.size());
+        List<Product> found = new ArrayList<>(ids.size());
+        productRepo.findAllById(ids).forEach(found::add);
+        return found;
+    }
+
+    private List<Product> readRedis(Collection<String> ids) {
+        List<String> keys = ids.stream().map(id -> KEY_PREFIX + id).toList();
+        List<Product> found = new ArrayList<>(keys.size());
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(keys);
+            if (values == null) return found;
+            for (String json : values) {
+                if (json != null && !json.equals(TOMBSTONE)) found.add(objectMapper.readValue(json, Product.class));
+            }
+        } catch (Exception ex) {
+            log.warn("Redis product batch read failed for {} ids: {}", keys.size(), ex.getMessage());
+        }
+        return found;
+    }
+
+    private Product readRedis(String id) {
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + id);
+            return json == null || json.equals(TOMBSTONE) ? null : objectMapper.readValue(json, Product.class);
+        } catch (Exception ex) {
+            log.warn("Redis product read failed for {}: {}", id, ex.getMessage());
+            return null;
+        }
+    }
+
+    // only into an empty slot: a tombstone means the product changed after this copy may have been read
+    private void writeRedis(Product p) {
+        try {
+            redisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + p.getId(), objectMapper.writeValueAsString(p), redisTtl);
+        } catch (Exception ex) {
+            log.warn("Redis product write failed for {}: {}", p.getId(), ex.getMessage());
+        }
+    }
+
+    private record Entry(Product product, long loadedAt) {}
+}
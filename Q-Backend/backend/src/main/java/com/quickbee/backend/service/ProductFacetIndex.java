@@ -0,0 +1,310 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.dto.FacetedProductsResponse;
+import com.quickbee.backend.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Incrementally maintained facet counts for the catalog.
+ *
+ * Products are bucketed into a cube of cells keyed by (category, price bucket, in-stock). Each cell
+ * keeps its count plus a price multiset, so a price range costs O(1) for fully covered buckets and
+ * a sub-map sum only for the two edge buckets. Product writes and stock changes update single
+ * cells; no Mongo aggregation runs per request and no periodic rebuild is needed.
+ *
+ * Categories are grouped case-insensitively; the original spellings are kept so callers can query
+ * Mongo with an index-friendly {@code category $in [...]} instead of a case-insensitive regex.
+ */
+@Component
+public class ProductFacetIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductFacetIndex.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final double[] bucketLowerBounds; // ascending, first is 0
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, FacetDoc> docs = new HashMap<>();
+    private final Map<String, Cell[][]> cube = new TreeMap<>();               // category key -> [bucket][inStock]
+    private final Map<String, Map<String, Integer>> spellings = new HashMap<>(); // category key -> original -> count
+
+    public ProductFacetIndex(MongoTemplate mongoTemplate,
+                             @Value("${catalog.facets.price-buckets:0,50,100,200,500,1000}") double[] priceBuckets) {
+        this.mongoTemplate = mongoTemplate;
+        this.bucketLowerBounds = priceBuckets.clone();
+        Arrays.sort(this.bucketLowerBounds);
+    }
+
+    /* ========= Maintenance ========= */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Query q = new Query();
+        q.fields().include("category").include("price").include("stockQuantity");
+
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            cube.clear();
+            spellings.clear();
+            try (Stream<Product> stream = mongoTemplate.stream(q, Product.class)) {
+                stream.forEach(p -> addUnlocked(p.getId(), FacetDoc.of(p)));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product facet index built: {} products, {} categories in {} ms",
+                docs.size(), cube.size(), System.currentTimeMillis() - start);
+    }
+
+    public void upsert(Product p) {
+        if (p == null || p.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(p.getId());
+            addUnlocked(p.getId(), FacetDoc.of(p));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Bulk variant of {@link #upsert}: one write-lock acquisition for the whole batch. */
+    public void upsertAll(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (Product p : products) {
+                if (p == null || p.getId() == null) continue;
+                removeUnlocked(p.getId());
+                addUnlocked(p.getId(), FacetDoc.of(p));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Stock-only change (checkout, rollback): moves the product between in-stock cells if needed.
+     * Returns true when the product's in-stock state flipped.
+     */
+    public boolean updateStock(String productId, Integer stockQuantity) {
+        boolean inStock = stockQuantity != null && stockQuantity > 0;
+        lock.writeLock().lock();
+        try {
+            FacetDoc old = docs.get(productId);
+            if (old == null || old.inStock() == inStock) return false;
+            removeUnlocked(productId);
+            addUnlocked(productId, new FacetDoc(old.category(), old.price(), inStock));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /* ========= Query ========= */
+
+    /** All stored spellings of a category (case-insensitive match), for an indexed $in query. */
+    public List<String> categorySpellings(String category) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> s = spellings.get(key(category));
+            return s == null ? List.of(category) : List.copyOf(s.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Number of products matching every filter (null filter = no restriction). */
+    public long count(Set<String> categories, Double min, Double max, Boolean inStock) {
+        lock.readLock().lock();
+        try {
+            return countUnlocked(keys(categories), min, max, inStock);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Disjunctive facet counts: each facet applies every filter except its own, so the UI can
+     * show how many products each alternative selection would return.
+     */
+    public Facets facets(Set<String> categories, Double min, Double max, Boolean inStock) {
+        lock.readLock().lock();
+        try {
+            Set<String> catKeys = keys(categories);
+
+            List<FacetedProductsResponse.CategoryCount> categoryCounts = new ArrayList<>();
+            for (String key : cube.keySet()) {
+                long n = countUnlocked(Set.of(key), min, max, inStock);
+                if (n > 0) categoryCounts.add(new FacetedProductsResponse.CategoryCount(label(key), n));
+            }
+
+            List<FacetedProductsResponse.PriceBucket> buckets = new ArrayList<>();
+            for (int b = 0; b < bucketLowerBounds.length; b++) {
+                Double to = b + 1 < bucketLowerBounds.length ? bucketLowerBounds[b + 1] : null;
+                long n = sumCells(catKeys, b, inStock);
+                buckets.add(new FacetedProductsResponse.PriceBucket(bucketLowerBounds[b], to, n));
+            }
+
+            long inStockCount = countUnlocked(catKeys, min, max, Boolean.TRUE);
+            long outOfStockCount = countUnlocked(catKeys, min, max, Boolean.FALSE);
+            long total = countUnlocked(catKeys, min, max, inStock);
+            return new Facets(total, categoryCounts, buckets, inStockCount, outOfStockCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public record Facets(long total,
+                         List<FacetedProductsResponse.CategoryCount> categories,
+                         List<FacetedProductsResponse.PriceBucket> priceBuckets,
+                         long inStock,
+                         long outOfStock) {}
+
+    /* ========= Internals ========= */
+
+    private long countUnlocked(Set<String> catKeys, Double min, Double max, Boolean inStock) {
+        double lo = min == null ? 0.0 : min;
+        double hi = max == null ? Double.MAX_VALUE : max;
+        if (lo > hi) return 0;
+        int firstBucket = bucketOf(lo);
+        int lastBucket = bucketOf(hi);
+
+        long total = 0;
+        for (Map.Entry<String, Cell[][]> e : cube.entrySet()) {
+            if (catKeys != null && !catKeys.contains(e.getKey())) continue;
+            Cell[][] cells = e.getValue();
+            for (int b = firstBucket; b <= lastBucket; b++) {
+                boolean edge = b == firstBucket || b == lastBucket;
+                for (int s = 0; s < 2; s++) {
+                    if (inStock != null && (s == 1) != inStock) continue;
+                    Cell c = cells[b][s];
+                    if (c == null) continue;
+                    total += edge ? c.countBetween(lo, hi) : c.count;
+                }
+            }
+        }
+        return total;
+    }
+
+    private long sumCells(Set<String> catKeys, int bucket, Boolean inStock) {
+        long total = 0;
+        for (Map.Entry<String, Cell[][]> e : cube.entrySet()) {
+            if (catKeys != null && !catKeys.contains(e.getKey())) continue;
+            for (int s = 0; s < 2; s++) {
+                if (inStock != null && (s == 1) != inStock) continue;
+                Cell c = e.getValue()[bucket][s];
+                if (c != null) total += c.count;
+            }
+        }
+        return total;
+    }
+
+    private void addUnlocked(String id, FacetDoc doc) {
+        docs.put(id, doc);
+        String key = key(doc.category());
+        Cell[][] cells = cube.computeIfAbsent(key, k -> new Cell[bucketLowerBounds.length][2]);
+        int b = bucketOf(doc.price());
+        int s = doc.inStock() ? 1 : 0;
+        if (cells[b][s] == null) cells[b][s] = new Cell();
+        cells[b][s].add(doc.price());
+        spellings.computeIfAbsent(key, k -> new HashMap<>()).merge(doc.category(), 1, Integer::sum);
+    }
+
+    private void removeUnlocked(String id) {
+        FacetDoc doc = docs.remove(id);
+        if (doc == null) return;
+        String key = key(doc.category());
+        Cell[][] cells = cube.get(key);
+        if (cells != null) {
+            Cell c = cells[bucketOf(doc.price())][doc.inStock() ? 1 : 0];
+            if (c != null) c.remove(doc.price());
+        }
+        Map<String, Integer> s = spellings.get(key);
+        if (s != null && s.merge(doc.category(), -1, Integer::sum) <= 0) {
+            s.remove(doc.category());
+            if (s.isEmpty()) {
+                spellings.remove(key);
+                cube.remove(key);
+            }
+        }
+    }
+
+    private int bucketOf(double price) {
+        int pos = Arrays.binarySearch(bucketLowerBounds, price);
+        int b = pos >= 0 ? pos : -pos - 2;
+        return Math.max(0, Math.min(b, bucketLowerBounds.length - 1));
+    }
+
+    private String label(String key) {
+        // most common original spelling
+        return spellings.get(key).entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(key);
+    }
+
+    private static Set<String> keys(Set<String> categories) {
+        if (categories == null || categories.isEmpty()) return null;
+        Set<String> out = new HashSet<>();
+        for (String c : categories) out.add(key(c));
+        return out;
+    }
+
+    private static String key(String category) {
+        return category == null ? "" : category.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record FacetDoc(String category, double price, boolean inStock) {
+        static FacetDoc of(Product p) {
+            return new FacetDoc(
+                    p.getCategory() == null ? "" : p.getCategory(),
+                    p.getPrice() == null ? 0.0 : p.getPrice(),
+                    p.getStockQuantity() != null && p.getStockQuantity() > 0);
+        }
+    }
+
+    // one (category, bucket, in-stock) cell: count + price multiset for edge-bucket range counts
+    private static final class Cell {
+        int count;
+        final TreeMap<Double, Integer> prices = new TreeMap<>();
+
+        void add(double price) {
+            count++;
+            prices.merge(price, 1, Integer::sum);
+        }
+
+        void remove(double price) {
+            Integer n = prices.get(price);
+            if (n == null) return;
+            count--;
+            if (n == 1) prices.remove(price); else prices.put(price, n - 1);
+        }
+
+        long countBetween(double lo, double hi) {
+            long n = 0;
+            for (int v : prices.subMap(lo, true, hi, true).values()) n += v;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.quickbee.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.quickbee.backend.dto.ProductImportReport;
+import com.quickbee.backend.dto.ProductRequest;
+import com.quickbee.backend.model.Product;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming bulk catalog import (NDJSON or CSV).
+ *
+ * The body is read line by line, so memory is bounded by one batch no matter how big the file is.
+ * Each row is validated against the {@link ProductRequest} constraints and upserted by id, or by
+ * (name, category) when no id is given. A batch costs one id-resolution query plus one unordered
+ * bulkWrite; the search index, facet index and product cache are refreshed once per batch.
+ *
+ * CSV needs a header row naming the columns (id, name, description, price, stockQuantity,
+ * category, imageUrl); quoted fields may contain commas and "" escapes but not line breaks.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductImportService.class);
+
+    public enum Format { NDJSON, CSV }
+
+    private final MongoTemplate mongoTemplate;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final CatalogIndexSync indexSync;
+    private final ProductCache productCache;
+    private final CatalogVersion catalogVersion;
+    private final StripedStockService stripedStock;
+    private final int batchSize;
+    private final int maxReportedErrors;
+
+    public ProductImportService(MongoTemplate mongoTemplate,
+                                Validator validator,
+                                ObjectMapper objectMapper,
+                                CatalogIndexSync indexSync,
+                                ProductCache productCache,
+                                CatalogVersion catalogVersion,
+                                StripedStockService stripedStock,
+                                @Value("${catalog.import.batch-size:1000}") int batchSize,
+                                @Value("${catalog.import.max-reported-errors:1000}") int maxReportedErrors) {
+        this.mongoTemplate = mongoTemplate;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.indexSync = indexSync;
+        this.productCache = productCache;
+        this.catalogVersion = catalogVersion;
+        this.stripedStock = stripedStock;
+        this.batchSize = batchSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public static Format formatFor(String contentType) {
+        String ct = contentType == null ? "" : contentType.toLowerCase(Locale.ROOT);
+        if (ct.startsWith("application/x-ndjson") || ct.startsWith("application/jsonl")) return Format.NDJSON;
+        if (ct.startsWith("text/csv")) return Format.CSV;
+        throw new IllegalArgumentException("Unsupported import content type: " + contentType
+                + " (use application/x-ndjson or text/csv)");
+    }
+
+    public ProductImportReport importProducts(InputStream body, Format format) throws IOException {
+        long start = System.nanoTime();
+        ProductImportReport report = new ProductImportReport();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+
+        List<Row> batch = new ArrayList<>(batchSize);
+        Set<String> batchKeys = new HashSet<>();
+        List<String> header = null;
+        long lineNo = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            if (line.isBlank()) continue;
+            if (format == Format.CSV && header == null) {
+                header = parseCsvLine(line).stream().map(String::trim).toList();
+                continue;
+            }
+            report.setRowsRead(report.getRowsRead() + 1);
+
+            Row row;
+            try {
+                row = format == Format.NDJSON ? parseJson(lineNo, line) : parseCsv(lineNo, line, header);
+            } catch (IllegalArgumentException ex) {
+                fail(report, lineNo, ex.getMessage());
+                continue;
+            }
+            String violations = validate(row.req());
+            if (violations != null) {
+                fail(report, lineNo, violations);
+                continue;
+            }
+
+            // the same product twice in one unordered batch would race; write the earlier one first
+            if (!batchKeys.add(row.key())) {
+                flush(batch, report);
+                batchKeys.clear();
+                batchKeys.add(row.key());
+            }
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                flush(batch, report);
+                batchKeys.clear();
+            }
+        }
+        flush(batch, report);
+
+        long elapsedNanos = System.nanoTime() - start;
+        report.setElapsedMs(elapsedNanos / 1_000_000);
+        report.setRowsPerSecond(elapsedNanos == 0 ? 0 : report.getRowsRead() * 1e9 / elapsedNanos);
+        log.info("Product import: {} rows, {} inserted, {} updated, {} failed in {} ms ({} rows/s)",
+                report.getRowsRead(), report.getInserted(), report.getUpdated(), report.getFailed(),
+                report.getElapsedMs(), Math.round(report.getRowsPerSecond()));
+        return report;
+    }
+
+    /* ========= Batch write ========= */
+
+    private void flush(List<Row> batch, ProductImportReport report) {
+        if (batch.isEmpty()) return;
+        report.setBatches(report.getBatches() + 1);
+        List<Product> products = resolveIds(batch);
+
+        Instant now = Instant.now();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (Product p : products) {
+            Update u = new Update()
+                    .set("name", p.getName())
+                    .set("description", p.getDescription())
+                    .set("price", p.getPrice())
+                    .set("category", p.getCategory())
+                    .set("imageUrl", p.getImageUrl())
+                    .set("updatedAt", now)
+                    .inc("version", 1)
+                    .setOnInsert("createdAt", now);
+            // hot SKUs: stockQuantity is folded from the stripes, the new stock is applied to them below
+            if (!stripedStock.isHot(p.getId())) u.set("stockQuantity", p.getStockQuantity());
+            ops.upsert(new Query(Criteria.where("_id").is(p.getId())), u);
+        }
+
+        Set<Integer> failedIdx = new HashSet<>();
+        BulkWriteResult result;
+        try {
+            result = ops.execute();
+        } catch (BulkOperationException ex) {
+            result = ex.getResult();
+            for (BulkWriteError err : ex.getErrors()) {
+                failedIdx.add(err.getIndex());
+                fail(report, batch.get(err.getIndex()).line(), err.getMessage());
+            }
+        } catch (RuntimeException ex) {
+            log.error("Product import batch failed: {}", ex.getMessage());
+            batch.forEach(r -> fail(report, r.line(), "batch write failed: " + ex.getMessage()));
+            batch.clear();
+            return;
+        }
+        report.setInserted(report.getInserted() + result.getUpserts().size());
+        report.setUpdated(report.getUpdated() + result.getMatchedCount());
+
+        List<Product> written = new ArrayList<>(products.size());
+        for (int i = 0; i < products.size(); i++) {
+            if (!failedIdx.contains(i)) written.add(products.get(i));
+        }
+        for (Product p : written) {
+            if (stripedStock.isHot(p.getId())) stripedStock.setAvailable(p.getId(), p.getStockQuantity());
+        }
+        indexSync.upsertAll(written);
+        productCache.invalidateAll(written.stream().map(Product::getId).toList());
+        if (!written.isEmpty()) catalogVersion.bump();
+        batch.clear();
+    }
+
+    // rows without an id are matched to existing products by (name, category) with one query per batch
+    private List<Product> resolveIds(List<Row> batch) {
+        Map<String, String> existing = new HashMap<>();
+        Set<String> names = new HashSet<>();
+        Set<String> categories = new HashSet<>();
+        for (Row r : batch) {
+            if (r.id() == null) {
+                names.add(r.req().getName());
+                categories.add(r.req().getCategory());
+            }
+        }
+        if (!names.isEmpty()) {
+            Query q = new Query(Criteria.where("category").in(categories).and("name").in(names));
+            q.fields().include("name").include("category");
+            for (Product p : mongoTemplate.find(q, Product.class)) {
+                existing.putIfAbsent(naturalKey(p.getName(), p.getCategory()), p.getId());
+            }
+        }
+
+        List<Product> out = new ArrayList<>(batch.size());
+        for (Row r : batch) {
+            String id = r.id() != null ? r.id()
+                    : existing.computeIfAbsent(r.key(), k -> new ObjectId().toHexString());
+            ProductRequest req = r.req();
+            Product p = new Product();
+            p.setId(id);
+            p.setName(req.getName());
+            p.setDescription(req.getDescription());
+            p.setPrice(req.getPrice());
+            p.setStockQuantity(req.getStockQuantity());
+            p.setCategory(req.getCategory());
+            p.setImageUrl(req.getImageUrl());
+            out.add(p);
+        }
+        return out;
+    }
+
+    /* ========= Parsing / validation ========= */
+
+    private Row parseJson(long lineNo, String line) {
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(line);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("malformed JSON: " + ex.getOriginalMessage());
+        }
+        if (node == null || !node.isObject()) throw new IllegalArgumentException("expected a JSON object");
+        try {
+            ProductRequest req = objectMapper.treeToValue(node, ProductRequest.class);
+            return new Row(lineNo, checkId(node.hasNonNull("id") ? node.get("id").asText() : null), req);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("invalid field: " + ex.getOriginalMessage());
+        }
+    }
+
+    private Row parseCsv(long lineNo, String line, List<String> header) {
+        List<String> cells = parseCsvLine(line);
+        if (cells.size() != header.size()) {
+            throw new IllegalArgumentException("expected " + header.size() + " columns, got " + cells.size());
+        }
+        Map<String, String> v = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            String cell = cells.get(i).trim();
+            v.put(header.get(i), cell.isEmpty() ? null : cell);
+        }
+        ProductRequest req = new ProductRequest();
+        req.setName(v.get("name"));
+        req.setDescription(v.get("description"));
+        req.setPrice(number(v.get("price"), "price", Double::valueOf));
+        req.setStockQuantity(number(v.get("stockQuantity"), "stockQuantity", Integer::valueOf));
+        req.setCategory(v.get("category"));
+        req.setImageUrl(v.get("imageUrl"));
+        return new Row(lineNo, checkId(v.get("id")), req);
+    }
+
+    private static <T> T number(String raw, String field, Function<String, T> parse) {
+        if (raw == null) return null;
+        try {
+            return parse.apply(raw);
+        } catch (NumberFormatException ex) {
+            throw new IllegalArgumentException(field + ": not a number");
+        }
+    }
+
+    private static String checkId(String id) {
+        if (id == null || id.isBlank()) return null;
+        if (!ObjectId.isValid(id)) throw new IllegalArgumentException("id: not a valid product id");
+        return id;
+    }
+
+    // minimal RFC 4180 line split: quoted fields, "" escapes
+    static List<String> parseCsvLine(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') { cur.append('"'); i++; }
+                else if (c == '"') quoted = false;
+                else cur.append(c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(cur.toString());
+                cur.setLength(0);
+            } else {
+                cur.append(c);
+            }
+        }
+        if (quoted) throw new IllegalArgumentException("unterminated quoted field");
+        out.add(cur.toString());
+        return out;
+    }
+
+    private String validate(ProductRequest req) {
+        Set<ConstraintViolation<ProductRequest>> violations = validator.validate(req);
+        if (violations.isEmpty()) return null;
+        return violations.stream()
+                .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
+    }
+
+    private void fail(ProductImportReport report, long line, String message) {
+        report.setFailed(report.getFailed() + 1);
+        if (report.getErrors().size() < maxReportedErrors) {
+            report.getErrors().add(new ProductImportReport.RowError(line, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static String naturalKey(String name, String category) {
+        return name + '\u0000' + category;
+    }
+
+    private record Row(long line, String id, ProductRequest req) {
+        String key() {
+            return id != null ? id : naturalKey(req.getName(), req.getCategory());
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.dto.CursorPage;
+import com.quickbee.backend.model.Product;
+import com.quickbee.backend.util.KeysetCursor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over product name, description and category.
+ *
+ * Each field is normalized (lowercase, accents stripped) and split into terms; every term also
+ * contributes its 1-2 char prefixes and all of its trigrams, so "containing" style queries are
+ * answered from posting lists instead of an unanchored regex scan of the products collection.
+ * Only ids are kept in memory and returned in rank order; ProductService hydrates the requested
+ * slice with one projected $in query so stock and price are always current.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final int GRAM = 3;
+
+    // field weights used by scoring
+    private static final int NAME = 0, CATEGORY = 1, DESCRIPTION = 2;
+    private static final int[] EXACT_WEIGHT = {10, 6, 3};
+    private static final int[] PREFIX_WEIGHT = {6, 4, 2};
+    private static final int[] INFIX_WEIGHT = {3, 2, 1};
+
+    private static final Comparator<Scored> RANK_ORDER = Comparator.comparingInt(Scored::score).reversed()
+            .thenComparing(Scored::sortName)
+            .thenComparing(Scored::id);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<String>> postings = new HashMap<>(); // term/prefix/gram -> product ids
+    private final Map<String, IndexedDoc> docs = new HashMap<>();      // product id -> indexed terms
+
+    public ProductSearchIndex(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /* ========= Maintenance ========= */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Query q = new Query();
+        q.fields().include("name").include("description").include("category");
+
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docs.clear();
+            try (Stream<Product> stream = mongoTemplate.stream(q, Product.class)) {
+                stream.forEach(this::addUnlocked);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index built: {} products, {} postings in {} ms",
+                docs.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public void upsert(Product p) {
+        if (p == null || p.getId() == null) return;
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(p.getId());
+            addUnlocked(p);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Bulk variant of {@link #upsert}: one write-lock acquisition for the whole batch. */
+    public void upsertAll(Collection<Product> products) {
+        lock.writeLock().lock();
+        try {
+            for (Product p : products) {
+                if (p == null || p.getId() == null) continue;
+                removeUnlocked(p.getId());
+                addUnlocked(p);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String productId) {
+        lock.writeLock().lock();
+        try {
+            removeUnlocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /* ========= Query ========= */
+
+    /**
+     * Relevance-ranked search. Every query term must match (exact, prefix or infix) in at least
+     * one field; ties are broken by name so paging is stable.
+     */
+    public Page<String> search(String q, int page, int size) {
+        PageRequest pageable = PageRequest.of(page, size);
+        List<String> queryTerms = distinctTerms(q);
+        if (queryTerms.isEmpty()) return Page.empty(pageable);
+
+        List<Scored> ranked;
+        lock.readLock().lock();
+        try {
+            ranked = rank(queryTerms);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), ranked.size());
+        int to = Math.min(from + size, ranked.size());
+        List<String> content = ranked.subList(from, to).stream().map(Scored::id).toList();
+        return new PageImpl<>(content, pageable, ranked.size());
+    }
+
+    /**
+     * Keyset variant of {@link #search}: the cursor holds the (score, name, id) of the last row,
+     * so the next slice starts right after it even if products were added in between.
+     */
+    public CursorPage<String> scroll(String q, String cursor, int size) {
+        List<String> queryTerms = distinctTerms(q);
+        if (queryTerms.isEmpty()) return new CursorPage<>(List.of(), null, false);
+
+        List<Scored> ranked;
+        lock.readLock().lock();
+        try {
+            ranked = rank(queryTerms);
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int from = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            List<Object> after = KeysetCursor.decode(cursor);
+            if (after.size() != 4 || !"search".equals(after.get(0)) || !(after.get(1) instanceof Integer score)
+                    || !(after.get(2) instanceof String sortName) || !(after.get(3) instanceof String id)) {
+                throw new IllegalArgumentException("Cursor does not match this listing");
+            }
+            Scored last = new Scored(id, score, sortName);
+            int pos = Collections.binarySearch(ranked, last, RANK_ORDER);
+            from = pos >= 0 ? pos + 1 : -pos - 1;
+        }
+        int to = Math.min(from + Math.max(1, size), ranked.size());
+        List<Scored> slice = ranked.subList(from, to);
+        boolean hasNext = to < ranked.size();
+        String next = null;
+        if (hasNext) {
+            Scored last = slice.get(slice.size() - 1);
+            next = KeysetCursor.encode("search", last.score(), last.sortName(), last.id());
+        }
+        return new CursorPage<>(slice.stream().map(Scored::id).toList(), next, hasNext);
+    }
+
+    private List<Scored> rank(List<String> queryTerms) {
+        Set<String> candidates = null;
+        for (String term : queryTerms) {
+            Set<String> matches = candidatesFor(term);
+            if (candidates == null) {
+                candidates = new HashSet<>(matches);
+            } else {
+                candidates.retainAll(matches);
+            }
+            if (candidates.isEmpty()) return List.of();
+        }
+
+        List<Scored> out = new ArrayList<>(candidates.size());
+        for (String id : candidates) {
+            IndexedDoc doc = docs.get(id);
+            if (doc == null) continue;
+            int score = 0;
+            boolean allMatched = true;
+            for (String term : queryTerms) {
+                int s = doc.score(term);
+                if (s == 0) { allMatched = false; break; } // gram false positive
+                score += s;
+            }
+            if (allMatched) out.add(new Scored(id, score, doc.sortName()));
+        }
+        out.sort(RANK_ORDER);
+        return out;
+    }
+
+    // superset of docs that may contain the term; exact scoring filters gram false positives
+    private Set<String> candidatesFor(String term) {
+        if (term.length() < GRAM) {
+            return postings.getOrDefault("p:" + term, Set.of());
+        }
+        Set<String> smallest = null;
+        List<Set<String>> lists = new ArrayList<>();
+        for (String g : grams(term)) {
+            Set<String> list = postings.get("g:" + g);
+            if (list == null) return Set.of();
+            lists.add(list);
+            if (smallest == null || list.size() < smallest.size()) smallest = list;
+        }
+        Set<String> result = new HashSet<>(smallest);
+        for (Set<String> list : lists) {
+            if (list != smallest) result.retainAll(list);
+            if (result.isEmpty()) break;
+        }
+        return result;
+    }
+
+    /* ========= Internals ========= */
+
+    private void addUnlocked(Product p) {
+        IndexedDoc doc = new IndexedDoc(
+                terms(p.getName()), terms(p.getCategory()), terms(p.getDescription()), normalize(p.getName()));
+        docs.put(p.getId(), doc);
+        for (String key : doc.postingKeys()) {
+            postings.computeIfAbsent(key, k -> new HashSet<>()).add(p.getId());
+        }
+    }
+
+    private void removeUnlocked(String productId) {
+        IndexedDoc old = docs.remove(productId);
+        if (old == null) return;
+        for (String key : old.postingKeys()) {
+            Set<String> ids = postings.get(key);
+            if (ids == null) continue;
+            ids.remove(productId);
+            if (ids.isEmpty()) postings.remove(key);
+        }
+    }
+
+    static String normalize(String s) {
+        if (s == null) return "";
+        String n = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return n.toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> terms(String s) {
+        String n = normalize(s);
+        if (n.isEmpty()) return List.of();
+        return Arrays.stream(n.split("[^\\p{Alnum}]+")).filter(t -> !t.isEmpty()).toList();
+    }
+
+    private static List<String> distinctTerms(String s) {
+        return terms(s).stream().distinct().toList();
+    }
+
+    private static List<String> grams(String term) {
+        List<String> out = new ArrayList<>(Math.max(1, term.length() - GRAM + 1));
+        for (int i = 0; i + GRAM <= term.length(); i++) out.add(term.substring(i, i + GRAM));
+        return out;
+    }
+
+    private record Scored(String id, int score, String sortName) {}
+
+    private record IndexedDoc(List<String> name, List<String> category, List<String> description, String sortName) {
+
+        Set<String> postingKeys() {
+            Set<String> keys = new HashSet<>();
+            for (List<String> field : List.of(name, category, description)) {
+                for (String t : field) {
+                    keys.add("p:" + t.substring(0, 1));
+                    if (t.length() >= 2) keys.add("p:" + t.substring(0, 2));
+                    for (String g : grams(t)) keys.add("g:" + g);
+                }
+            }
+            return keys;
+        }
+
+        // best field match for the term, +1 for every additional field it appears in; 0 = no match
+        int score(String term) {
+            int best = 0;
+            int fieldsMatched = 0;
+            List<List<String>> fields = List.of(name, category, description);
+            for (int f = NAME; f <= DESCRIPTION; f++) {
+                int fieldBest = 0;
+                for (String t : fields.get(f)) {
+                    int s = t.equals(term) ? EXACT_WEIGHT[f]
+                            : t.startsWith(term) ? PREFIX_WEIGHT[f]
+                            : t.contains(term) ? INFIX_WEIGHT[f]
+                            : 0;
+                    fieldBest = Math.max(fieldBest, s);
+                }
+                if (fieldBest > 0) fieldsMatched++;
+                best = Math.max(best, fieldBest);
+            }
+            return best == 0 ? 0 : best + fieldsMatched - 1;
+        }
+    }
+}
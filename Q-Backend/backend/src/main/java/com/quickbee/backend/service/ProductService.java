@@ -1,20 +1,46 @@
 package com.quickbee.backend.service;
 
+import com.quickbee.backend.dto.CursorPage;
+import com.quickbee.backend.dto.FacetedProductsResponse;
+import com.quickbee.backend.dto.ProductCardResponse;
 import com.quickbee.backend.dto.ProductRequest;
+import com.quickbee.backend.dto.SuggestionResponse;
 import com.quickbee.backend.exception.ResourceNotFoundException;
 import com.quickbee.backend.model.Product;
 import com.quickbee.backend.repository.ProductRepository;
+import com.quickbee.backend.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.*;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
-import java.util.List;
+
+import java.time.Instant;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
 
     private final ProductRepository repo;
+    private final ProductSearchIndex searchIndex;
+    private final ProductCache productCache;
+    private final ProductFacetIndex facetIndex;
+    private final ProductSuggestIndex suggestIndex;
+    private final CatalogVersion catalogVersion;
+    private final MongoTemplate mongoTemplate;
+    private final StripedStockService stripedStock;
+    private final CatalogIndexSync indexSync;
+
+    // sort keys that have a matching {key, _id} compound index (see Product)
+    private static final Set<String> KEYSET_SORT_KEYS = Set.of("name", "price", "createdAt");
+    private static final int MAX_SCROLL_PAGE = 100;
 
     public Product createProduct(ProductRequest req) {
         Product p = new Product();
@@ -24,57 +50,249 @@ public class ProductService {
         p.setStockQuantity(req.getStockQuantity());
         p.setCategory(req.getCategory());
         p.setImageUrl(req.getImageUrl());
-        return repo.save(p);
+        p.setVersion(1L);
+        Product saved = repo.save(p);
+        indexSync.upsert(saved);
+        catalogVersion.bump();
+        return saved;
     }
 
-    public Page<Product> getAllProducts(int page, int size, String sortBy, String sortDir) {
+    public Page<ProductCardResponse> getAllProducts(int page, int size, String sortBy, String sortDir) {
         Sort.Direction dir = Sort.Direction.fromOptionalString(sortDir).orElse(Sort.Direction.ASC);
         Sort sort = Sort.by(dir, sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
-        return repo.findAll(pageable);
+        return cardPage(new Criteria(), pageable);
     }
 
     public Product getProductById(String id) {
-        return repo.findById(id).orElseThrow(() -> new ResourceNotFoundException("Product not found: " + id));
+        return productCache.get(id).orElseThrow(() -> new ResourceNotFoundException("Product not found: " + id));
     }
 
-    public Page<Product> getProductsByCategory(String category, int page, int size) {
+    public Page<ProductCardResponse> getProductsByCategory(String category, int page, int size) {
         Pageable pageable = PageRequest.of(page, size);
-        return repo.findByCategory(category, pageable);
+        return cardPage(Criteria.where("category").is(category), pageable);
     }
 
-    public Page<Product> search(String q, int page, int size) {
-        Pageable pageable = PageRequest.of(page, size);
-        String regex = ".*" + q + ".*";
-        return repo.findByNameContainingIgnoreCaseOrDescriptionContainingIgnoreCase(q, q, pageable);
+    public Page<ProductCardResponse> search(String q, int page, int size) {
+        // served from the in-memory inverted index; only the returned page is read from Mongo
+        Page<String> ids = searchIndex.search(q, page, size);
+        return new PageImpl<>(loadCards(ids.getContent()), ids.getPageable(), ids.getTotalElements());
+    }
+
+    public List<SuggestionResponse> suggest(String q, int limit) {
+        return suggestIndex.suggest(q, Math.min(limit, 20));
+    }
+
+    public String suggestVersion() {
+        return suggestIndex.version();
     }
 
     public Product updateProduct(String id, ProductRequest req) {
-        Product p = getProductById(id);
-        p.setName(req.getName());
-        p.setDescription(req.getDescription());
-        p.setPrice(req.getPrice());
-        p.setStockQuantity(req.getStockQuantity());
-        p.setCategory(req.getCategory());
-        p.setImageUrl(req.getImageUrl());
-        return repo.save(p);
+        // only the catalog fields: a full save would write back stale stockHolds/reservedQuantity/stockStripes
+        Product saved = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id).and("stockStripes").exists(false)),
+                catalogUpdate(req).set("stockQuantity", req.getStockQuantity()),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (saved == null) {
+            // hot SKU: stockQuantity is folded from the stripes, so the new stock is applied to them
+            saved = mongoTemplate.findAndModify(new Query(Criteria.where("_id").is(id)), catalogUpdate(req),
+                    FindAndModifyOptions.options().returnNew(true), Product.class);
+            if (saved == null) throw new ResourceNotFoundException("Product not found: " + id);
+            if (saved.getStockStripes() != null) stripedStock.setAvailable(id, req.getStockQuantity());
+        }
+        indexSync.upsert(saved);
+        productCache.invalidate(id);
+        catalogVersion.bump();
+        return saved;
+    }
+
+    private static Update catalogUpdate(ProductRequest req) {
+        return new Update()
+                .set("name", req.getName())
+                .set("description", req.getDescription())
+                .set("price", req.getPrice())
+                .set("category", req.getCategory())
+                .set("imageUrl", req.getImageUrl())
+                .set("updatedAt", Instant.now())
+                .inc("version", 1);
     }
 
     public void deleteProduct(String id) {
         repo.deleteById(id);
+        stripedStock.remove(id); // after the delete, so no node can turn it hot again meanwhile
+        indexSync.remove(id);
+        productCache.invalidate(id);
+        catalogVersion.bump();
     }
 
     // additional helpers
     public List<Product> topStocked() {
         return repo.findTop10ByOrderByStockQuantityDesc();
     }
-    public Page<Product> filter(Double min, Double max, String category, int page, int size) {
+    public Page<ProductCardResponse> filter(Double min, Double max, String category, int page, int size) {
         double lo = min != null ? min : 0.0;
         double hi = max != null ? max : Double.MAX_VALUE;
         Pageable p = PageRequest.of(page, size);
-        return (category != null && !category.isBlank())
-                ? repo.findByPriceBetweenAndCategoryIgnoreCase(lo, hi, category, p)
-                : repo.findByPriceBetween(lo, hi, p);
+        Criteria criteria = Criteria.where("price").gte(lo).lte(hi);
+        if (category != null && !category.isBlank()) {
+            // case-insensitive like the old ...AndCategoryIgnoreCase query, but as an indexed $in
+            criteria = criteria.and("category").in(facetIndex.categorySpellings(category));
+        }
+        return cardPage(criteria, p);
+    }
+
+    /**
+     * Filtered results plus facet counts. Counts (and the page total) come from the in-memory
+     * facet index, so the only Mongo work is the projected page read.
+     */
+    public FacetedProductsResponse facetedFilter(Set<String> categories, Double min, Double max, Boolean inStock,
+                                                 int page, int size) {
+        ProductFacetIndex.Facets facets = facetIndex.facets(categories, min, max, inStock);
+
+        List<Criteria> and = new ArrayList<>();
+        if (categories != null && !categories.isEmpty()) {
+            Set<String> spellings = new HashSet<>();
+            categories.forEach(c -> spellings.addAll(facetIndex.categorySpellings(c)));
+            and.add(Criteria.where("category").in(spellings));
+        }
+        and.add(Criteria.where("price").gte(min != null ? min : 0.0).lte(max != null ? max : Double.MAX_VALUE));
+        if (inStock != null) {
+            and.add(inStock ? Criteria.where("stockQuantity").gt(0)
+                            : new Criteria().orOperator(Criteria.where("stockQuantity").lte(0), Criteria.where("stockQuantity").is(null)));
+        }
+
+        Pageable pageable = PageRequest.of(page, size, Sort.by("price").and(Sort.by("_id")));
+        Query query = new Query(new Criteria().andOperator(and)).with(pageable);
+        includeCardFields(query);
+        List<ProductCardResponse> content = mongoTemplate.find(query, Product.class).stream().map(this::toCard).toList();
+
+        return new FacetedProductsResponse(new PageImpl<>(content, pageable, facets.total()),
+                facets.categories(), facets.priceBuckets(), facets.inStock(), facets.outOfStock());
+    }
+
+    /* ========= Keyset (cursor) pagination: no skip, no count ========= */
+
+    public CursorPage<ProductCardResponse> scrollProducts(String cursor, int size, String sortBy, String sortDir) {
+        Sort.Direction dir = Sort.Direction.fromOptionalString(sortDir).orElse(Sort.Direction.ASC);
+        return keysetPage(new Criteria(), sortBy, dir, cursor, size);
+    }
+
+    public CursorPage<ProductCardResponse> scrollByCategory(String category, String cursor, int size) {
+        return keysetPage(Criteria.where("category").is(category), "name", Sort.Direction.ASC, cursor, size);
+    }
+
+    public CursorPage<ProductCardResponse> scrollFilter(Double min, Double max, String category, String cursor, int size) {
+        double lo = min != null ? min : 0.0;
+        double hi = max != null ? max : Double.MAX_VALUE;
+        Criteria base = Criteria.where("price").gte(lo).lte(hi);
+        if (category != null && !category.isBlank()) {
+            // exact match so the {category, price, _id} index is used
+            base = new Criteria().andOperator(Criteria.where("category").is(category), base);
+        }
+        return keysetPage(base, "price", Sort.Direction.ASC, cursor, size);
+    }
+
+    public CursorPage<ProductCardResponse> scrollSearch(String q, String cursor, int size) {
+        CursorPage<String> ids = searchIndex.scroll(q, cursor, Math.max(1, Math.min(size, MAX_SCROLL_PAGE)));
+        return new CursorPage<>(loadCards(ids.getItems()), ids.getNextCursor(), ids.isHasNext());
+    }
+
+    private CursorPage<ProductCardResponse> keysetPage(Criteria base, String sortBy, Sort.Direction dir, String cursor, int size) {
+        if (!KEYSET_SORT_KEYS.contains(sortBy)) {
+            throw new IllegalArgumentException("Unsupported sort key for cursor pagination: " + sortBy);
+        }
+        size = Math.max(1, Math.min(size, MAX_SCROLL_PAGE));
+        Query query = new Query();
+        List<Criteria> and = new ArrayList<>(List.of(base));
+        if (cursor != null && !cursor.isBlank()) {
+            List<Object> after = KeysetCursor.decode(cursor);
+            if (after.size() != 3 || !sortBy.equals(after.get(0)) || !sortValueTyped(sortBy, after.get(1))
+                    || !(after.get(2) instanceof String id)) {
+                throw new IllegalArgumentException("Cursor does not match this listing");
+            }
+            and.add(afterCriteria(sortBy, dir, after.get(1), id));
+        }
+        query.addCriteria(new Criteria().andOperator(and));
+        query.with(Sort.by(dir, sortBy).and(Sort.by(dir, "_id")));
+        query.limit(size + 1); // one extra row tells us whether there is a next slice
+        includeCardFields(query).include(sortBy);
+
+        List<Product> rows = mongoTemplate.find(query, Product.class);
+        boolean hasNext = rows.size() > size;
+        if (hasNext) rows = rows.subList(0, size);
+
+        String next = null;
+        if (hasNext) {
+            Product last = rows.get(rows.size() - 1);
+            next = KeysetCursor.encode(sortBy, sortKeyValue(last, sortBy), last.getId());
+        }
+        return new CursorPage<>(rows.stream().map(this::toCard).toList(), next, hasNext);
+    }
+
+    // a value of another BSON type would compare by type bracket and silently return a wrong page
+    private static boolean sortValueTyped(String sortBy, Object value) {
+        if (value == null) return true; // products without the field
+        return switch (sortBy) {
+            case "name" -> value instanceof String;
+            case "price" -> value instanceof Number;
+            case "createdAt" -> value instanceof Instant;
+            default -> false;
+        };
     }
 
-}
\ No newline at end of file
+    // rows strictly after (value, id) in (sortBy dir, _id dir) order; Mongo sorts nulls first
+    private Criteria afterCriteria(String sortBy, Sort.Direction dir, Object value, String id) {
+        boolean asc = dir.isAscending();
+        Criteria sameKeyLaterId = new Criteria().andOperator(
+                Criteria.where(sortBy).is(value),
+                asc ? Criteria.where("_id").gt(id) : Criteria.where("_id").lt(id));
+        if (value == null) {
+            return asc
+                    ? new Criteria().orOperator(sameKeyLaterId, Criteria.where(sortBy).ne(null))
+                    : sameKeyLaterId;
+        }
+        return asc
+                ? new Criteria().orOperator(Criteria.where(sortBy).gt(value), sameKeyLaterId)
+                : new Criteria().orOperator(Criteria.where(sortBy).lt(value), sameKeyLaterId, Criteria.where(sortBy).is(null));
+    }
+
+    private Object sortKeyValue(Product p, String sortBy) {
+        return switch (sortBy) {
+            case "name" -> p.getName();
+            case "price" -> p.getPrice();
+            case "createdAt" -> p.getCreatedAt();
+            default -> throw new IllegalArgumentException(sortBy);
+        };
+    }
+
+    /* ========= List projection ========= */
+
+    // Page of cards: only the card fields are read from Mongo
+    private Page<ProductCardResponse> cardPage(Criteria criteria, Pageable pageable) {
+        Query query = new Query(criteria).with(pageable);
+        includeCardFields(query);
+        List<ProductCardResponse> content = mongoTemplate.find(query, Product.class).stream().map(this::toCard).toList();
+        // count only runs when the page size does not already tell us the total
+        return PageableExecutionUtils.getPage(content, pageable,
+                () -> mongoTemplate.count(Query.of(query).limit(-1).skip(-1), Product.class));
+    }
+
+    // projected $in query for an ordered id list (e.g. ranked search hits); keeps the given order
+    private List<ProductCardResponse> loadCards(List<String> ids) {
+        if (ids.isEmpty()) return List.of();
+        Query query = new Query(Criteria.where("_id").in(ids));
+        includeCardFields(query);
+        Map<String, Product> byId = new HashMap<>();
+        mongoTemplate.find(query, Product.class).forEach(p -> byId.put(p.getId(), p));
+        return ids.stream().map(byId::get).filter(Objects::nonNull).map(this::toCard).toList();
+    }
+
+    private Field includeCardFields(Query query) {
+        return query.fields().include("name", "price", "imageUrl", "category", "stockQuantity");
+    }
+
+    private ProductCardResponse toCard(Product p) {
+        boolean inStock = p.getStockQuantity() != null && p.getStockQuantity() > 0;
+        return new ProductCardResponse(p.getId(), p.getName(), p.getPrice(), p.getImageUrl(), p.getCategory(), inStock);
+    }
+}
@@ -0,0 +1,271 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.dto.SuggestionResponse;
+import com.quickbee.backend.model.Order;
+import com.quickbee.backend.model.Product;
+import com.quickbee.backend.model.enums.OrderStatus;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Typeahead over normalized product names and categories.
+ *
+ * Every word start of a name/category is a key in one sorted array, so a prefix is a contiguous
+ * range found by binary search. A max-segment-tree over the entry weights (1 + units sold, summed
+ * per category) returns the top N of that range in O(N log n) without scanning it.
+ *
+ * Readers use an immutable {@link Snapshot}. Product writes and sales only update the source maps
+ * and mark the index dirty; a scheduled task rebuilds a new snapshot and swaps it in atomically.
+ * Each snapshot carries a generation number, so {@link #version()} changes exactly when the
+ * served suggestions can.
+ */
+@Component
+public class ProductSuggestIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSuggestIndex.class);
+
+    private static final int MAX_KEYS_PER_TEXT = 4; // word starts indexed per name/category
+
+    private final MongoTemplate mongoTemplate;
+    private final int popularityDays;
+
+    // rebuild sources, guarded by 'this'
+    private final Map<String, Source> products = new HashMap<>();
+    private final Map<String, Long> unitsSold = new HashMap<>();
+    private volatile boolean dirty;
+    private final Object rebuildLock = new Object();
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8); // generations restart per node
+    private long generation; // guarded by rebuildLock
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public ProductSuggestIndex(MongoTemplate mongoTemplate,
+                               @Value("${catalog.suggest.popularity-days:30}") int popularityDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.popularityDays = popularityDays;
+    }
+
+    /* ========= Maintenance ========= */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        Query q = new Query();
+        q.fields().include("name").include("category");
+
+        // units sold per product over the popularity window, once at startup; later sales are recorded live
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("status").ne(OrderStatus.CANCELLED)
+                        .and("createdAt").gte(Instant.now().minus(Duration.ofDays(popularityDays)))),
+                Aggregation.unwind("items"),
+                Aggregation.group("items.productId").sum("items.qty").as("sold"));
+
+        synchronized (this) {
+            products.clear();
+            unitsSold.clear();
+            try (Stream<Product> stream = mongoTemplate.stream(q, Product.class)) {
+                stream.forEach(p -> products.put(p.getId(), Source.of(p)));
+            }
+            for (Document d : mongoTemplate.aggregate(agg, Order.class, Document.class)) {
+                Object id = d.get("_id");
+                Number sold = d.get("sold", Number.class);
+                if (id != null && sold != null) unitsSold.put(id.toString(), sold.longValue());
+            }
+            dirty = true;
+        }
+        rebuildIfDirty();
+        log.info("Product suggest index built: {} entries, {} keys in {} ms",
+                snapshot.entries.length, snapshot.keys.length, System.currentTimeMillis() - start);
+    }
+
+    public synchronized void upsert(Product p) {
+        if (p == null || p.getId() == null) return;
+        products.put(p.getId(), Source.of(p));
+        dirty = true;
+    }
+
+    public synchronized void upsertAll(Collection<Product> batch) {
+        for (Product p : batch) {
+            if (p != null && p.getId() != null) products.put(p.getId(), Source.of(p));
+        }
+        dirty = true;
+    }
+
+    public synchronized void remove(String productId) {
+        if (products.remove(productId) != null) dirty = true;
+    }
+
+    public synchronized void recordSale(String productId, int qty) {
+        unitsSold.merge(productId, (long) qty, Long::sum);
+        dirty = true;
+    }
+
+    // coalesces bursts of writes (bulk import, checkout traffic) into one rebuild
+    @Scheduled(fixedDelayString = "${catalog.suggest.rebuild-delay-ms:2000}")
+    public void rebuildIfDirty() {
+        synchronized (rebuildLock) { // one build at a time, so an older build never overwrites a newer one
+            List<Entry> entries;
+            synchronized (this) {
+                if (!dirty) return;
+                dirty = false;
+                entries = collectEntries();
+            }
+            snapshot = Snapshot.build(entries, ++generation); // copy-on-write: readers keep the old snapshot until the swap
+        }
+    }
+
+    /* ========= Query ========= */
+
+    public List<SuggestionResponse> suggest(String q, int limit) {
+        String prefix = String.join(" ", ProductSearchIndex.terms(q));
+        if (prefix.isEmpty() || limit <= 0) return List.of();
+        return snapshot.top(prefix, limit);
+    }
+
+    /** Opaque token of the snapshot currently served; changes on every swap. */
+    public String version() {
+        return epoch + "." + snapshot.generation;
+    }
+
+    /* ========= Internals ========= */
+
+    private List<Entry> collectEntries() {
+        List<Entry> entries = new ArrayList<>(products.size() + 64);
+        Map<String, long[]> categoryWeight = new HashMap<>();
+        Map<String, String> categoryLabel = new HashMap<>();
+        for (Map.Entry<String, Source> e : products.entrySet()) {
+            Source s = e.getValue();
+            long weight = 1 + unitsSold.getOrDefault(e.getKey(), 0L);
+            if (!s.name().isEmpty()) {
+                entries.add(new Entry(s.name(), SuggestionResponse.Type.PRODUCT, e.getKey(), weight));
+            }
+            if (!s.category().isEmpty()) {
+                String key = ProductSearchIndex.normalize(s.category());
+                categoryWeight.computeIfAbsent(key, k -> new long[1])[0] += weight;
+                categoryLabel.putIfAbsent(key, s.category());
+            }
+        }
+        categoryWeight.forEach((key, w) ->
+                entries.add(new Entry(categoryLabel.get(key), SuggestionResponse.Type.CATEGORY, null, w[0])));
+        return entries;
+    }
+
+    private record Source(String name, String category) {
+        static Source of(Product p) {
+            return new Source(p.getName() == null ? "" : p.getName().trim(),
+                    p.getCategory() == null ? "" : p.getCategory().trim());
+        }
+    }
+
+    private record Entry(String text, SuggestionResponse.Type type, String productId, long weight) {}
+
+    private static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(new String[0], new int[0], new Entry[0], 0);
+
+        final String[] keys;   // sorted normalized word-start suffixes
+        final int[] keyEntry;  // key -> entry index
+        final Entry[] entries;
+        final int[] tree;      // max-segment-tree of key positions by entry weight; leaves at [n, 2n)
+        final long generation;
+
+        private Snapshot(String[] keys, int[] keyEntry, Entry[] entries, long generation) {
+            this.keys = keys;
+            this.keyEntry = keyEntry;
+            this.entries = entries;
+            this.generation = generation;
+            int n = keys.length;
+            this.tree = new int[2 * n];
+            for (int i = 0; i < n; i++) tree[n + i] = i;
+            for (int i = n - 1; i > 0; i--) tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+        }
+
+        static Snapshot build(List<Entry> entryList, long generation) {
+            Entry[] entries = entryList.toArray(new Entry[0]);
+            List<Map.Entry<String, Integer>> keyed = new ArrayList<>(entries.length * 2);
+            for (int i = 0; i < entries.length; i++) {
+                List<String> words = ProductSearchIndex.terms(entries[i].text());
+                for (int w = 0; w < words.size() && w < MAX_KEYS_PER_TEXT; w++) {
+                    keyed.add(Map.entry(String.join(" ", words.subList(w, words.size())), i));
+                }
+            }
+            keyed.sort(Map.Entry.comparingByKey());
+            String[] keys = new String[keyed.size()];
+            int[] keyEntry = new int[keyed.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = keyed.get(i).getKey();
+                keyEntry[i] = keyed.get(i).getValue();
+            }
+            return new Snapshot(keys, keyEntry, entries, generation);
+        }
+
+        List<SuggestionResponse> top(String prefix, int limit) {
+            int lo = lowerBound(prefix);
+            int hi = lowerBound(prefix + Character.MAX_VALUE);
+            if (lo >= hi) return List.of();
+
+            // best-first over disjoint sub-ranges, each represented by its max position
+            PriorityQueue<int[]> ranges = new PriorityQueue<>(
+                    (a, b) -> Long.compare(weightAt(b[2]), weightAt(a[2])));
+            ranges.add(new int[]{lo, hi, argmax(lo, hi)});
+            Set<Integer> seen = new HashSet<>();
+            List<SuggestionResponse> out = new ArrayList<>(limit);
+            while (!ranges.isEmpty() && out.size() < limit) {
+                int[] r = ranges.poll();
+                int best = r[2];
+                int entryIdx = keyEntry[best];
+                if (seen.add(entryIdx)) {
+                    Entry e = entries[entryIdx];
+                    out.add(new SuggestionResponse(e.text(), e.type(), e.productId()));
+                }
+                if (r[0] < best) ranges.add(new int[]{r[0], best, argmax(r[0], best)});
+                if (best + 1 < r[1]) ranges.add(new int[]{best + 1, r[1], argmax(best + 1, r[1])});
+            }
+            return out;
+        }
+
+        private int lowerBound(String key) {
+            int lo = 0, hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(key) < 0) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        // position of the heaviest key in [l, r)
+        private int argmax(int l, int r) {
+            int n = keys.length;
+            int best = l;
+            for (l += n, r += n; l < r; l >>= 1, r >>= 1) {
+                if ((l & 1) == 1) best = better(best, tree[l++]);
+                if ((r & 1) == 1) best = better(best, tree[--r]);
+            }
+            return best;
+        }
+
+        private long weightAt(int pos) {
+            return entries[keyEntry[pos]].weight();
+        }
+
+        // heavier wins; on ties the earlier (alphabetically smaller) key
+        private int better(int a, int b) {
+            long wa = weightAt(a), wb = weightAt(b);
+            return wa > wb || (wa == wb && a < b) ? a : b;
+        }
+    }
+}
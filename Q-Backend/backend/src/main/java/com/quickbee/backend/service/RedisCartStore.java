@@ -0,0 +1,443 @@
+package com.quickbee.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.quickbee.backend.model.Cart;
+import com.quickbee.backend.model.CartItem;
+import com.quickbee.backend.model.Product;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hot cart store: one Redis hash per user ({@code cart:<userId>}), one field per product holding the
+ * line as JSON, plus a {@code _v} version bumped by every mutation.
+ *
+ * Mutations are single Lua scripts (atomic, one round trip) that also mark the user dirty. A
+ * scheduled flusher drains the dirty set and writes the touched carts to Mongo in one unordered
+ * bulkWrite, so many taps on the same cart collapse into one document write. Writes are
+ * conditional on {@code version}, so an older snapshot never overwrites a newer one.
+ * Carts idle for {@code cart.redis.idle-minutes} are flushed and dropped from Redis; Mongo keeps them.
+ */
+@Component
+@ConditionalOnProperty(name = "cart.store", havingValue = "redis")
+public class RedisCartStore implements CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisCartStore.class);
+
+    private static final String KEY_PREFIX = "cart:";
+    private static final String DIRTY_KEY = "cart:dirty";   // users with unflushed changes
+    private static final String ACTIVE_KEY = "cart:active"; // user -> last mutation (ms)
+    private static final String VERSION = "_v";
+    private static final String MONGO_ID = "_id";
+    private static final String NOT_LOADED = "!nl";
+    private static final String ABSENT = "!absent";
+
+    // KEYS: hash, dirty, active. ARGV: userId, nowMs, backstopTtlSeconds, ...
+    private static final String TOUCH = """
+            local function touch()
+              redis.call('HINCRBY', KEYS[1], '_v', 1)
+              redis.call('SADD', KEYS[2], ARGV[1])
+              redis.call('ZADD', KEYS[3], ARGV[2], ARGV[1])
+              redis.call('EXPIRE', KEYS[1], ARGV[3])
+            end
+            if redis.call('HEXISTS', KEYS[1], '_v') == 0 then return {'!nl'} end
+            """;
+
+    // ARGV[4] productId, ARGV[5] line json (qty ignored), ARGV[6] qty to add, ARGV[7] max qty
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ADD = new DefaultRedisScript<>(TOUCH + """
+            local line = cjson.decode(ARGV[5])
+            local qty = tonumber(ARGV[6])
+            local cur = redis.call('HGET', KEYS[1], ARGV[4])
+            if cur then qty = qty + cjson.decode(cur).qty end
+            line.qty = math.min(qty, tonumber(ARGV[7]))
+            redis.call('HSET', KEYS[1], ARGV[4], cjson.encode(line))
+            touch()
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    // ARGV[4] productId, ARGV[5] line json or '' to keep the stored snapshot, ARGV[6] qty (0 removes)
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SET = new DefaultRedisScript<>(TOUCH + """
+            local cur = redis.call('HGET', KEYS[1], ARGV[4])
+            if not cur then return {'!absent'} end
+            local qty = tonumber(ARGV[6])
+            if qty <= 0 then
+              redis.call('HDEL', KEYS[1], ARGV[4])
+            else
+              local line = cjson.decode(ARGV[5] ~= '' and ARGV[5] or cur)
+              line.qty = qty
+              redis.call('HSET', KEYS[1], ARGV[4], cjson.encode(line))
+            end
+            touch()
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    // ARGV[4..] groups of (kind A|S, productId, line json or '', qty, max qty), applied in order
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> APPLY = new DefaultRedisScript<>(TOUCH + """
+            for i = 4, #ARGV, 5 do
+              local pid, json, qty = ARGV[i + 1], ARGV[i + 2], tonumber(ARGV[i + 3])
+              local cur = redis.call('HGET', KEYS[1], pid)
+              if ARGV[i] == 'A' then
+                if cur then qty = qty + cjson.decode(cur).qty end
+                qty = math.min(qty, tonumber(ARGV[i + 4]))
+              end
+              if qty <= 0 then
+                redis.call('HDEL', KEYS[1], pid)
+              elseif cur or json ~= '' then
+                local line = cjson.decode(json ~= '' and json or cur)
+                line.qty = qty
+                redis.call('HSET', KEYS[1], pid, cjson.encode(line))
+              end
+            end
+            touch()
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLEAR = new DefaultRedisScript<>(TOUCH + """
+            local v = redis.call('HGET', KEYS[1], '_v')
+            local id = redis.call('HGET', KEYS[1], '_id')
+            redis.call('DEL', KEYS[1])
+            redis.call('HSET', KEYS[1], '_v', v)
+            if id then redis.call('HSET', KEYS[1], '_id', id) end
+            touch()
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    // ARGV[4] version, ARGV[5] mongo id or '', ARGV[6..] productId, line json pairs; no-op if already loaded
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LOAD = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], '_v') == 1 then return redis.call('HGETALL', KEYS[1]) end
+            redis.call('HSET', KEYS[1], '_v', ARGV[4])
+            if ARGV[5] ~= '' then redis.call('HSET', KEYS[1], '_id', ARGV[5]) end
+            for i = 6, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end
+            redis.call('ZADD', KEYS[3], ARGV[2], ARGV[1])
+            redis.call('EXPIRE', KEYS[1], ARGV[3])
+            return redis.call('HGETALL', KEYS[1])
+            """, List.class);
+
+    // ARGV[1] userId, ARGV[2] last-mutation score seen before the flush: drop only if untouched since
+    private static final RedisScript<Long> EVICT = new DefaultRedisScript<>("""
+            local s = redis.call('ZSCORE', KEYS[3], ARGV[1])
+            if s and tonumber(s) == tonumber(ARGV[2]) then
+              redis.call('DEL', KEYS[1])
+              redis.call('ZREM', KEYS[3], ARGV[1])
+              redis.call('SREM', KEYS[2], ARGV[1])
+              return 1
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final long idleMillis;
+    private final long backstopTtlSeconds;
+    private final int flushBatchSize;
+
+    private final LongAdder mutations = new LongAdder();
+    private final LongAdder mongoWrites = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder forcedFlushes = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+
+    public RedisCartStore(StringRedisTemplate redisTemplate,
+                          MongoTemplate mongoTemplate,
+                          ObjectMapper objectMapper,
+                          @Value("${cart.redis.idle-minutes:30}") long idleMinutes,
+                          @Value("${cart.redis.flush-batch-size:500}") int flushBatchSize) {
+        this.redisTemplate = redisTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.idleMillis = idleMinutes * 60_000;
+        this.backstopTtlSeconds = idleMinutes * 60 * 2; // only hit if the evictor is not running
+        this.flushBatchSize = flushBatchSize;
+    }
+
+    /* ========= CartStore ========= */
+
+    @Override
+    public Cart get(String userId) {
+        Map<Object, Object> hash = redisTemplate.opsForHash().entries(key(userId));
+        if (hash.containsKey(VERSION)) {
+            List<String> flat = new ArrayList<>(hash.size() * 2);
+            hash.forEach((k, v) -> { flat.add((String) k); flat.add((String) v); });
+            return decode(userId, flat);
+        }
+        return decode(userId, load(userId));
+    }
+
+    @Override
+    public Cart addItem(String userId, Product product, int qty, int maxQty) {
+        return mutate(userId, ADD, product.getId(), lineJson(product), Integer.toString(qty), Integer.toString(maxQty));
+    }
+
+    @Override
+    public Cart setItem(String userId, String productId, Product product, int qty) {
+        return mutate(userId, SET, productId, product == null ? "" : lineJson(product), Integer.toString(qty));
+    }
+
+    @Override
+    public Cart clear(String userId) {
+        return mutate(userId, CLEAR);
+    }
+
+    @Override
+    public Cart apply(String userId, List<LineOp> ops) {
+        List<String> args = new ArrayList<>(ops.size() * 5);
+        for (LineOp op : ops) {
+            args.add(op.kind() == LineOp.Kind.ADD ? "A" : "S");
+            args.add(op.productId());
+            args.add(op.product() == null ? "" : lineJson(op.product()));
+            args.add(Integer.toString(op.qty()));
+            args.add(Integer.toString(op.maxQty()));
+        }
+        return mutate(userId, APPLY, args.toArray(new String[0]));
+    }
+
+    @Override
+    public void flush(String userId) {
+        forcedFlushes.increment();
+        writeToMongo(List.of(userId));
+    }
+
+    @Override
+    public Map<String, Object> getStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("store", "redis");
+        out.put("mutations", mutations.sum());
+        out.put("mongoWrites", mongoWrites.sum());
+        out.put("flushes", flushes.sum());
+        out.put("forcedFlushes", forcedFlushes.sum());
+        out.put("evicted", evicted.sum());
+        try {
+            out.put("dirtyBacklog", redisTemplate.opsForSet().size(DIRTY_KEY));
+            out.put("activeCarts", redisTemplate.opsForZSet().size(ACTIVE_KEY));
+        } catch (Exception ex) {
+            out.put("redisError", ex.getMessage());
+        }
+        return out;
+    }
+
+    /* ========= Write-behind ========= */
+
+    @Scheduled(fixedDelayString = "${cart.redis.flush-interval-ms:1000}")
+    public void flushDirty() {
+        List<String> users;
+        try {
+            users = redisTemplate.opsForSet().pop(DIRTY_KEY, flushBatchSize);
+        } catch (Exception ex) {
+            log.warn("Cart flush skipped, Redis unavailable: {}", ex.getMessage());
+            return;
+        }
+        if (users == null || users.isEmpty()) return;
+        flushes.increment();
+        try {
+            writeToMongo(users);
+        } catch (RuntimeException ex) {
+            log.error("Cart flush of {} carts failed, will retry: {}", users.size(), ex.getMessage());
+            redisTemplate.opsForSet().add(DIRTY_KEY, users.toArray(new String[0]));
+        }
+    }
+
+    // idle carts: flush, then drop from Redis unless touched in between
+    @Scheduled(fixedDelayString = "${cart.redis.evict-interval-ms:60000}")
+    public void evictIdle() {
+        Set<ZSetOperations.TypedTuple<String>> idle;
+        try {
+            idle = redisTemplate.opsForZSet().rangeByScoreWithScores(
+                    ACTIVE_KEY, 0, System.currentTimeMillis() - idleMillis, 0, flushBatchSize);
+        } catch (Exception ex) {
+            log.warn("Cart eviction skipped, Redis unavailable: {}", ex.getMessage());
+            return;
+        }
+        if (idle == null || idle.isEmpty()) return;
+
+        List<String> users = idle.stream().map(ZSetOperations.TypedTuple::getValue).toList();
+        try {
+            writeToMongo(users);
+        } catch (RuntimeException ex) {
+            log.error("Cart eviction flush failed, keeping carts in Redis: {}", ex.getMessage());
+            return;
+        }
+        for (ZSetOperations.TypedTuple<String> t : idle) {
+            String userId = t.getValue();
+            Long dropped = redisTemplate.execute(EVICT, List.of(key(userId), DIRTY_KEY, ACTIVE_KEY),
+                    userId, Long.toString(t.getScore().longValue()));
+            if (dropped != null && dropped == 1) evicted.increment();
+        }
+    }
+
+    // one pipelined read + one unordered bulkWrite for all given carts
+    private void writeToMongo(List<String> users) {
+        List<Object> hashes = redisTemplate.executePipelined((RedisCallback<Object>) conn -> {
+            for (String u : users) conn.hashCommands().hGetAll(rawKey(u));
+            return null;
+        });
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Cart.class);
+        List<String> written = new ArrayList<>();
+        Instant now = Instant.now();
+        for (int i = 0; i < users.size(); i++) {
+            @SuppressWarnings("unchecked")
+            Map<String, String> hash = (Map<String, String>) hashes.get(i);
+            if (hash == null || !hash.containsKey(VERSION)) continue; // evicted: Mongo already has it
+            List<String> flat = new ArrayList<>(hash.size() * 2);
+            hash.forEach((k, v) -> { flat.add(k); flat.add(v); });
+            Cart cart = decode(users.get(i), flat);
+
+            Query q = new Query(new Criteria().andOperator(
+                    Criteria.where("userId").is(cart.getUserId()),
+                    new Criteria().orOperator(Criteria.where("version").lt(cart.getVersion()),
+                            Criteria.where("version").exists(false))));
+            Update u = new Update()
+                    .set("items", cart.getItems())
+                    .set("subtotal", cart.getSubtotal())
+                    .set("totalItems", cart.getTotalItems())
+                    .set("version", cart.getVersion())
+                    .set("updatedAt", now)
+                    .setOnInsert("createdAt", now);
+            ops.upsert(q, u);
+            written.add(cart.getUserId());
+        }
+        if (written.isEmpty()) return;
+
+        try {
+            ops.execute();
+        } catch (BulkOperationException ex) {
+            // duplicate key = Mongo already holds this version or a newer one
+            List<String> retry = new ArrayList<>();
+            for (BulkWriteError err : ex.getErrors()) {
+                if (err.getCode() != 11000) retry.add(written.get(err.getIndex()));
+            }
+            if (!retry.isEmpty()) {
+                log.error("Cart flush failed for {} carts: {}", retry.size(), ex.getMessage());
+                redisTemplate.opsForSet().add(DIRTY_KEY, retry.toArray(new String[0]));
+            }
+        }
+        mongoWrites.add(written.size());
+    }
+
+    /* ========= Internals ========= */
+
+    private Cart mutate(String userId, RedisScript<List> script, String... opArgs) {
+        mutations.increment();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            List<String> result = run(script, userId, opArgs);
+            if (result.size() == 1 && NOT_LOADED.equals(result.get(0))) {
+                load(userId); // first touch since eviction: seed Redis from Mongo, then apply
+                continue;
+            }
+            if (result.size() == 1 && ABSENT.equals(result.get(0))) return null;
+            return decode(userId, result);
+        }
+        throw new OptimisticLockingFailureException("Cart was modified concurrently, please retry");
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> run(RedisScript<List> script, String userId, String... opArgs) {
+        Object[] argv = new Object[3 + opArgs.length];
+        argv[0] = userId;
+        argv[1] = Long.toString(System.currentTimeMillis());
+        argv[2] = Long.toString(backstopTtlSeconds);
+        System.arraycopy(opArgs, 0, argv, 3, opArgs.length);
+        List<String> result = redisTemplate.execute(script, List.of(key(userId), DIRTY_KEY, ACTIVE_KEY), argv);
+        return result == null ? List.of() : result;
+    }
+
+    private List<String> load(String userId) {
+        Cart cart = mongoTemplate.findOne(new Query(Criteria.where("userId").is(userId)), Cart.class);
+        List<String> args = new ArrayList<>();
+        args.add(Long.toString(cart == null || cart.getVersion() == null ? 0 : cart.getVersion()));
+        args.add(cart == null || cart.getId() == null ? "" : cart.getId());
+        if (cart != null && cart.getItems() != null) {
+            for (CartItem i : cart.getItems()) {
+                args.add(i.getProductId());
+                args.add(toJson(new Line(i.getName(), i.getImageUrl(), i.getPrice(), i.getQty())));
+            }
+        }
+        return run(LOAD, userId, args.toArray(new String[0]));
+    }
+
+    private Cart decode(String userId, List<String> flat) {
+        Cart cart = new Cart();
+        cart.setUserId(userId);
+        List<CartItem> items = new ArrayList<>();
+        for (int i = 0; i + 1 < flat.size(); i += 2) {
+            String field = flat.get(i), value = flat.get(i + 1);
+            if (VERSION.equals(field)) {
+                cart.setVersion(Long.parseLong(value));
+            } else if (MONGO_ID.equals(field)) {
+                cart.setId(value);
+            } else {
+                Line line = fromJson(value);
+                items.add(new CartItem(field, line.name(), line.imageUrl(), line.price(), line.qty()));
+            }
+        }
+        items.sort(Comparator.comparing(i -> i.getName() == null ? "" : i.getName(), String.CASE_INSENSITIVE_ORDER));
+        double subtotal = 0.0;
+        int totalItems = 0;
+        for (CartItem i : items) {
+            subtotal += (i.getPrice() == null ? 0.0 : i.getPrice()) * i.getQty();
+            totalItems += i.getQty();
+        }
+        cart.setItems(items);
+        cart.setSubtotal(Math.round(subtotal * 100.0) / 100.0);
+        cart.setTotalItems(totalItems);
+        return cart;
+    }
+
+    private String lineJson(Product p) {
+        return toJson(new Line(p.getName(), p.getImageUrl(), p.getPrice() == null ? 0.0 : p.getPrice(), 0));
+    }
+
+    private String toJson(Line line) {
+        try {
+            return objectMapper.writeValueAsString(line);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Cannot serialize cart line", ex);
+        }
+    }
+
+    private Line fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, Line.class);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Corrupt cart line: " + json, ex);
+        }
+    }
+
+    private static String key(String userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    private static byte[] rawKey(String userId) {
+        return key(userId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private record Line(String name, String imageUrl, Double price, Integer qty) {}
+}
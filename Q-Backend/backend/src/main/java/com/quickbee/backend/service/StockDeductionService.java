@@ -0,0 +1,414 @@
+package com.quickbee.backend.service;
+
+import com.mongodb.WriteConcern;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Updates;
+import com.quickbee.backend.model.Order;
+import com.quickbee.backend.model.OrderItem;
+import com.quickbee.backend.model.Product;
+import com.quickbee.backend.model.StockJournal;
+import com.quickbee.backend.model.StockJournal.State;
+import com.quickbee.backend.model.enums.OrderStatus;
+import com.quickbee.backend.service.OrderService.InsufficientStockException;
+import com.quickbee.backend.service.OrderService.Shortage;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Checkout stock deduction in a constant number of round trips, with a durable journal that then
+ * serves as the order's time-boxed stock reservation.
+ *
+ * 1) A {@link StockJournal} entry (PENDING) is written with j:true before any stock moves.
+ * 2) One unordered bulkWrite applies every line as {@code stockQuantity >= qty} conditional $inc,
+ *    moving the qty into {@code reservedQuantity} and tagging each product with the journal id
+ *    ({@code stockHolds}).
+ * 3) One read-back of the products shows exactly which lines applied; if any fell short, the
+ *    applied ones are restored in one bulkWrite and the shortfalls are reported.
+ * 4) Once the order is saved the entry becomes RESERVED until {@code stock.reservation.ttl-minutes}.
+ *    A verified payment commits it; a cancellation or expiry releases the stock and cancels the
+ *    still-unpaid order.
+ *
+ * Hot SKUs ({@link StripedStockService}) take their lines from stock stripes instead of the product
+ * document; the same holds make every settle below apply to both. Holds a product document still
+ * carries from before it went hot settle into {@code heldOffStripes}/{@code stripeCredit} instead
+ * of its stock fields, which are then display values.
+ *
+ * {@code stockQuantity} therefore always is the available-to-sell number, so catalog reads need
+ * nothing extra. Expiries are due-time entries in a Redis sorted set ({@value #EXPIRY_KEY}), polled
+ * by range and claimed by ZREM, so no collection is scanned and they survive restarts; the set is
+ * re-seeded from the journal at startup. Restores only match products still holding the journal id,
+ * so they are idempotent; entries stuck in an intermediate state are settled by {@link #recoverStale}.
+ */
+@Service
+public class StockDeductionService {
+
+    private static final Logger log = LoggerFactory.getLogger(StockDeductionService.class);
+    private static final String EXPIRY_KEY = "stock:reservations"; // journal id -> expiresAt (ms)
+    private static final int EXPIRY_BATCH = 100;
+    private static final int CONFIRM_ATTEMPTS = 5; // re-reads of a journal that other callers keep moving
+
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final ProductCache productCache;
+    private final CatalogIndexSync indexSync;
+    private final CatalogVersion catalogVersion;
+    private final StripedStockService striped;
+    private final Duration recoverAfter;
+    private final Duration reservationTtl;
+
+    public StockDeductionService(MongoTemplate mongoTemplate,
+                                 StringRedisTemplate redisTemplate,
+                                 ProductCache productCache,
+                                 CatalogIndexSync indexSync,
+                                 CatalogVersion catalogVersion,
+                                 StripedStockService striped,
+                                 @Value("${stock.journal.recover-after-seconds:120}") long recoverAfterSeconds,
+                                 @Value("${stock.reservation.ttl-minutes:15}") long reservationTtlMinutes) {
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.productCache = productCache;
+        this.indexSync = indexSync;
+        this.catalogVersion = catalogVersion;
+        this.striped = striped;
+        this.recoverAfter = Duration.ofSeconds(recoverAfterSeconds);
+        this.reservationTtl = Duration.ofMinutes(reservationTtlMinutes);
+    }
+
+    /**
+     * Deducts all lines (productId -> qty) for the given order, or none of them.
+     * Returns the journal id to {@link #reserve} or {@link #rollback} once the order is saved or abandoned.
+     *
+     * @throws InsufficientStockException listing every line that fell short
+     */
+    public String deduct(String orderId, Map<String, Integer> lines) {
+        String journalId = new ObjectId().toHexString();
+        Instant now = Instant.now();
+        List<StockJournal.Line> items = new ArrayList<>(lines.size());
+        lines.forEach((pid, qty) -> items.add(new StockJournal.Line(pid, qty)));
+        insertJournaled(new StockJournal(journalId, orderId, items, State.PENDING, null, now, now));
+
+        // product documents in one bulkWrite; hot SKUs (striped stock) one stripe update per line
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        int bulkLines = 0;
+        Set<String> taken = new HashSet<>();
+        for (StockJournal.Line l : items) {
+            int stripes = striped.stripesOf(l.getProductId());
+            if (stripes > 0) {
+                if (striped.tryDeduct(journalId, l.getProductId(), stripes, l.getQty())) taken.add(l.getProductId());
+                continue;
+            }
+            ops.updateOne(
+                    new Query(Criteria.where("_id").is(l.getProductId())
+                            .and("stockQuantity").gte(l.getQty())
+                            .and("stockHolds").ne(journalId)
+                            .and("stockStripes").exists(false)), // turned hot meanwhile: handled below
+                    new Update().inc("stockQuantity", -l.getQty()).inc("reservedQuantity", l.getQty())
+                            .inc("version", 1).push("stockHolds", journalId));
+            bulkLines++;
+        }
+        long modified = bulkLines == 0 ? 0 : ops.execute().getModifiedCount();
+
+        Map<String, Product> after = readBack(lines.keySet());
+        if (modified + taken.size() == items.size()) {
+            stockChanged(after.values());
+            return journalId;
+        }
+
+        // some lines fell short: report exactly those, put the others back
+        List<Shortage> shortages = new ArrayList<>();
+        for (StockJournal.Line l : items) {
+            Product p = after.get(l.getProductId());
+            if (taken.contains(l.getProductId())) continue;
+            if (p != null && p.getStockHolds() != null && p.getStockHolds().contains(journalId)) continue;
+            // this node did not know the product is hot yet
+            if (p != null && p.getStockStripes() != null && !striped.isHot(p.getId())
+                    && striped.tryDeduct(journalId, p.getId(), p.getStockStripes(), l.getQty())) continue;
+            int available = p == null ? 0
+                    : p.getStockStripes() != null ? striped.available(p.getId()) : p.getStockQuantity();
+            shortages.add(new Shortage(l.getProductId(), l.getQty(), available));
+        }
+        if (shortages.isEmpty()) {
+            stockChanged(after.values());
+            return journalId;
+        }
+        restore(journalId, State.PENDING, items);
+        throw new InsufficientStockException(shortages);
+    }
+
+    /** The order is saved: hold the stock until the payment is verified or the reservation expires. */
+    public void reserve(String journalId) {
+        Instant expiresAt = Instant.now().plus(reservationTtl);
+        transition(journalId, State.PENDING, State.RESERVED, Updates.set("expiresAt", Date.from(expiresAt)));
+        scheduleExpiry(journalId, expiresAt);
+    }
+
+    /** The order was not created: give the stock back. */
+    public void rollback(String journalId) {
+        StockJournal j = mongoTemplate.findById(journalId, StockJournal.class);
+        if (j == null || j.getState() != State.PENDING) return;
+        restore(journalId, State.PENDING, j.getItems());
+    }
+
+    /**
+     * Payment verified: the order's reserved stock becomes sold. If the reservation already expired,
+     * the stock is taken again.
+     *
+     * @throws InsufficientStockException if it expired and the stock has been sold since
+     */
+    public void confirm(Order order) {
+        // a lost transition means someone else moved the journal: re-read it rather than assume a release
+        StockJournal j = latestFor(order.getId());
+        for (int attempt = 0; j != null && j.getState() != State.ROLLED_BACK; attempt++) {
+            if (j.getState() == State.COMMITTED) return; // also orders from before reservations
+            if (attempt == CONFIRM_ATTEMPTS) {
+                throw new IllegalStateException("Stock reservation of order " + order.getId() + " keeps changing");
+            }
+            if (j.getState() == State.RELEASING) {
+                restore(j.getId(), State.RELEASING, j.getItems()); // idempotent: finish the release first
+            } else if (transition(j.getId(), j.getState(), State.COMMITTED)) {
+                finishCommit(j);
+                return;
+            }
+            j = latestFor(order.getId());
+        }
+        if (j == null) return;
+
+        // released (expired or cancelled) before the payment came in: deduct again, sold at once
+        Map<String, Integer> lines = new LinkedHashMap<>();
+        for (OrderItem oi : order.getItems()) lines.merge(oi.getProductId(), oi.getQty(), Integer::sum);
+        String journalId = deduct(order.getId(), lines);
+        if (transition(journalId, State.PENDING, State.COMMITTED)) {
+            finishCommit(mongoTemplate.findById(journalId, StockJournal.class));
+        }
+        log.warn("Reservation for order {} had been released; stock re-taken at payment", order.getId());
+    }
+
+    /** The order was cancelled before payment: release the reserved stock. */
+    public void release(String orderId) {
+        StockJournal j = latestFor(orderId);
+        if (j != null && j.getState() == State.RESERVED) releaseReservation(j);
+    }
+
+    /* ========= Expiry ========= */
+
+    @Scheduled(fixedDelayString = "${stock.reservation.poll-ms:1000}")
+    public void expireDue() {
+        Set<String> due;
+        try {
+            due = redisTemplate.opsForZSet().rangeByScore(EXPIRY_KEY, 0, System.currentTimeMillis(), 0, EXPIRY_BATCH);
+        } catch (Exception ex) {
+            log.warn("Reservation expiry skipped, Redis unavailable: {}", ex.getMessage());
+            return;
+        }
+        if (due == null) return;
+        for (String journalId : due) {
+            Long claimed = redisTemplate.opsForZSet().remove(EXPIRY_KEY, journalId); // one node wins each entry
+            if (claimed == null || claimed == 0) continue;
+            try {
+                expire(journalId);
+            } catch (RuntimeException ex) {
+                log.error("Reservation expiry failed for {}, left to recovery: {}", journalId, ex.getMessage());
+            }
+        }
+    }
+
+    private void expire(String journalId) {
+        StockJournal j = mongoTemplate.findById(journalId, StockJournal.class);
+        if (j == null || j.getState() != State.RESERVED) return;
+        Order order = mongoTemplate.findById(j.getOrderId(), Order.class);
+        if (order != null && order.getStatus() != OrderStatus.PENDING && order.getStatus() != OrderStatus.CANCELLED) {
+            // confirmed without the payment flow (e.g. by an admin): keep the stock sold
+            if (transition(journalId, State.RESERVED, State.COMMITTED)) finishCommit(j);
+            return;
+        }
+        releaseReservation(j);
+    }
+
+    private void releaseReservation(StockJournal j) {
+        if (!transition(j.getId(), State.RESERVED, State.RELEASING)) return; // paid or released meanwhile
+        restore(j.getId(), State.RELEASING, j.getItems());
+        mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(j.getOrderId()).and("status").is(OrderStatus.PENDING)),
+                new Update().set("status", OrderStatus.CANCELLED).set("updatedAt", Instant.now()),
+                Order.class);
+        unscheduleExpiry(j.getId());
+    }
+
+    /* ========= Recovery ========= */
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverAtStartup() {
+        // re-seed the expiry set in case Redis lost it; ZADD of a known entry is a no-op
+        Query reserved = new Query(Criteria.where("state").is(State.RESERVED));
+        reserved.fields().include("expiresAt");
+        int seeded = 0;
+        for (StockJournal j : mongoTemplate.find(reserved, StockJournal.class)) {
+            scheduleExpiry(j.getId(), j.getExpiresAt());
+            seeded++;
+        }
+        int n = recoverStale();
+        log.info("Stock reservations: {} active, {} journal entries settled at startup", seeded, n);
+    }
+
+    @Scheduled(fixedDelayString = "${stock.journal.recover-interval-ms:60000}",
+            initialDelayString = "${stock.journal.recover-interval-ms:60000}")
+    public int recoverStale() {
+        Instant cutoff = Instant.now().minus(recoverAfter);
+        int settled = 0;
+
+        // crashed checkouts: reserve if the order was saved, otherwise restock
+        for (StockJournal j : stale(Criteria.where("state").is(State.PENDING).and("createdAt").lt(cutoff))) {
+            settled += settle(j, () -> {
+                if (mongoTemplate.exists(new Query(Criteria.where("_id").is(j.getOrderId())), Order.class)) {
+                    reserve(j.getId());
+                } else {
+                    restore(j.getId(), State.PENDING, j.getItems());
+                }
+            });
+        }
+        // releases interrupted half way: the restore is idempotent, finish it
+        for (StockJournal j : stale(Criteria.where("state").is(State.RELEASING).and("updatedAt").lt(cutoff))) {
+            settled += settle(j, () -> restore(j.getId(), State.RELEASING, j.getItems()));
+        }
+        // expiries whose claim was lost (crash between ZREM and release)
+        for (StockJournal j : stale(Criteria.where("state").is(State.RESERVED).and("expiresAt").lt(cutoff))) {
+            settled += settle(j, () -> expire(j.getId()));
+        }
+        return settled;
+    }
+
+    private List<StockJournal> stale(Criteria c) {
+        return mongoTemplate.find(new Query(c).limit(500), StockJournal.class);
+    }
+
+    private int settle(StockJournal j, Runnable action) {
+        try {
+            action.run();
+            return 1;
+        } catch (RuntimeException ex) {
+            log.error("Stock journal recovery failed for {}: {}", j.getId(), ex.getMessage());
+            return 0;
+        }
+    }
+
+    /* ========= Internals ========= */
+
+    // one bulkWrite; only products still holding the journal id are touched, so replays are harmless
+    private void restore(String journalId, State from, List<StockJournal.Line> items) {
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (StockJournal.Line l : items) {
+            ops.updateOne(holding(l.getProductId(), journalId, false),
+                    new Update().inc("stockQuantity", l.getQty()).inc("reservedQuantity", -l.getQty())
+                            .inc("version", 1).pull("stockHolds", journalId));
+            // went hot since: stockQuantity is a display value now, the qty goes to the stripes instead
+            ops.updateOne(holding(l.getProductId(), journalId, true),
+                    new Update().inc("stripeCredit", l.getQty()).inc("heldOffStripes", -l.getQty())
+                            .inc("version", 1).pull("stockHolds", journalId));
+        }
+        BulkWriteResult result = ops.execute();
+        if (striped.inUse() || result.getModifiedCount() < items.size()) striped.restore(journalId, items);
+        if (result.getModifiedCount() > 0) {
+            stockChanged(readBack(items.stream().map(StockJournal.Line::getProductId).toList()).values());
+        }
+        transition(journalId, from, State.ROLLED_BACK);
+    }
+
+    // the state is already COMMITTED: move the qty out of reservedQuantity and drop the holds
+    private void finishCommit(StockJournal j) {
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (StockJournal.Line l : j.getItems()) {
+            ops.updateOne(holding(l.getProductId(), j.getId(), false),
+                    new Update().inc("reservedQuantity", -l.getQty()).pull("stockHolds", j.getId()));
+            ops.updateOne(holding(l.getProductId(), j.getId(), true),
+                    new Update().inc("heldOffStripes", -l.getQty()).pull("stockHolds", j.getId()));
+        }
+        BulkWriteResult result = ops.execute();
+        if (striped.inUse() || result.getModifiedCount() < j.getItems().size()) striped.commit(j.getId(), j.getItems());
+        unscheduleExpiry(j.getId());
+    }
+
+    // the product document still holding the entry, in hot-SKU mode or not
+    private static Query holding(String productId, String journalId, boolean hot) {
+        return new Query(Criteria.where("_id").is(productId).and("stockHolds").is(journalId)
+                .and("stockStripes").exists(hot));
+    }
+
+    private StockJournal latestFor(String orderId) {
+        Query q = new Query(Criteria.where("orderId").is(orderId)).with(Sort.by(Sort.Direction.DESC, "createdAt"));
+        return mongoTemplate.findOne(q, StockJournal.class);
+    }
+
+    private Map<String, Product> readBack(Collection<String> ids) {
+        Query q = new Query(Criteria.where("_id").in(ids));
+        q.fields().include("stockQuantity").include("stockHolds").include("stockStripes");
+        Map<String, Product> out = new HashMap<>(ids.size() * 2);
+        for (Product p : mongoTemplate.find(q, Product.class)) out.put(p.getId(), p);
+        return out;
+    }
+
+    private void stockChanged(Collection<Product> products) {
+        // hot SKUs: the product document only carries display values, folded by StripedStockService
+        products = products.stream().filter(p -> p.getStockStripes() == null).toList();
+        if (products.isEmpty()) return;
+        productCache.invalidateAll(products.stream().map(Product::getId).toList());
+        // listings only show in/out of stock, so list ETags change only when that flips
+        Map<String, Integer> stock = new HashMap<>(products.size() * 2);
+        for (Product p : products) stock.put(p.getId(), p.getStockQuantity());
+        if (indexSync.stockChanged(stock)) catalogVersion.bump();
+    }
+
+    private void scheduleExpiry(String journalId, Instant expiresAt) {
+        try {
+            redisTemplate.opsForZSet().add(EXPIRY_KEY, journalId, expiresAt.toEpochMilli());
+        } catch (Exception ex) {
+            // the journal still has expiresAt; recovery picks it up
+            log.warn("Failed to schedule reservation expiry for {}: {}", journalId, ex.getMessage());
+        }
+    }
+
+    private void unscheduleExpiry(String journalId) {
+        try {
+            redisTemplate.opsForZSet().remove(EXPIRY_KEY, journalId);
+        } catch (Exception ex) {
+            log.warn("Failed to unschedule reservation expiry for {}: {}", journalId, ex.getMessage());
+        }
+    }
+
+    private void insertJournaled(StockJournal entry) {
+        Document doc = new Document();
+        mongoTemplate.getConverter().write(entry, doc);
+        mongoTemplate.execute(StockJournal.class,
+                coll -> coll.withWriteConcern(WriteConcern.JOURNALED).insertOne(doc));
+    }
+
+    // journaled compare-and-set of the entry state; false if it was not in 'from'
+    private boolean transition(String journalId, State from, State to, Bson... extra) {
+        List<Bson> updates = new ArrayList<>(List.of(Updates.set("state", to.name()), Updates.set("updatedAt", new Date())));
+        updates.addAll(List.of(extra));
+        Long modified = mongoTemplate.execute(StockJournal.class, coll -> coll.withWriteConcern(WriteConcern.JOURNALED)
+                .updateOne(Filters.and(Filters.eq("_id", new ObjectId(journalId)), Filters.eq("state", from.name())),
+                        Updates.combine(updates))
+                .getModifiedCount());
+        return modified != null && modified > 0;
+    }
+}
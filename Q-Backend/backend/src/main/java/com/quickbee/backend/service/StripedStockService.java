@@ -0,0 +1,421 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.exception.ResourceNotFoundException;
+import com.quickbee.backend.model.Product;
+import com.quickbee.backend.model.StockJournal;
+import com.quickbee.backend.model.StockStripe;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
+import org.springframework.data.mongodb.core.aggregation.ConditionalOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in hot-SKU mode: a product's stock is split over N {@link StockStripe} documents so concurrent
+ * checkouts of one flash-sale item update different documents instead of queueing on one.
+ *
+ * A deduction tries a random stripe first and walks the siblings when it is short; a line no single
+ * stripe can cover is spread over several, each holding its part under the same journal id (the
+ * {@code held} map records how much). Stripes carry the same journal holds as product documents, so
+ * reservations, restores and recovery in {@link StockDeductionService} work unchanged. The product's
+ * {@code stockQuantity}/{@code reservedQuantity} become display values that {@link #reconcile()}
+ * folds from the stripes. Reservations made before the switch keep their hold on the product
+ * document: their qty is counted in {@code heldOffStripes}, and what they give back collects in
+ * {@code stripeCredit} until reconcile moves it onto stripe 0. Nodes learn about toggles over
+ * {@value #CHANNEL}; a stale node is still safe because the product-document path only deducts, and
+ * only restocks, while {@code stockStripes} is unset.
+ */
+@Service
+public class StripedStockService implements MessageListener {
+
+    private static final Logger log = LoggerFactory.getLogger(StripedStockService.class);
+    public static final String CHANNEL = "stock:hot";
+
+    private final MongoTemplate mongoTemplate;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ProductCache productCache;
+    private final CatalogIndexSync indexSync;
+    private final CatalogVersion catalogVersion;
+
+    private volatile Map<String, Integer> hot = Map.of(); // productId -> stripe count
+    private volatile boolean stripesExist;                 // also true while a turned-off product still has stripes
+
+    private final LongAdder deductions = new LongAdder();
+    private final LongAdder siblingFallbacks = new LongAdder();
+    private final LongAdder splitLines = new LongAdder();
+    private final LongAdder shortages = new LongAdder();
+
+    public StripedStockService(MongoTemplate mongoTemplate,
+                               StringRedisTemplate redisTemplate,
+                               RedisMessageListenerContainer listenerContainer,
+                               ProductCache productCache,
+                               CatalogIndexSync indexSync,
+                               CatalogVersion catalogVersion) {
+        this.mongoTemplate = mongoTemplate;
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.productCache = productCache;
+        this.indexSync = indexSync;
+        this.catalogVersion = catalogVersion;
+    }
+
+    @PostConstruct
+    void subscribe() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void refresh() {
+        Query q = new Query(Criteria.where("stockStripes").gt(0));
+        q.fields().include("stockStripes");
+        Map<String, Integer> next = new HashMap<>();
+        for (Product p : mongoTemplate.find(q, Product.class)) next.put(p.getId(), p.getStockStripes());
+        hot = Map.copyOf(next);
+        stripesExist = !next.isEmpty() || mongoTemplate.exists(new Query(), StockStripe.class);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        refresh();
+    }
+
+    public boolean isHot(String productId) {
+        return hot.containsKey(productId);
+    }
+
+    /** Stripe count as last seen by this node, 0 if not hot. */
+    public int stripesOf(String productId) {
+        return hot.getOrDefault(productId, 0);
+    }
+
+    /** Whether stripe documents may hold journal entries, i.e. settles must also look at stripes. */
+    public boolean inUse() {
+        return stripesExist;
+    }
+
+    /* ========= Admin toggle ========= */
+
+    /** Turns hot-SKU mode on with {@code stripes} stripes (re-splitting if already on), or off with 0. */
+    public void setStripes(String productId, int stripes) {
+        disable(productId);
+        if (stripes > 0) enable(productId, stripes);
+        refresh();
+        redisTemplate.convertAndSend(CHANNEL, productId);
+    }
+
+    /** The product was deleted: drops its stripes and tells every node it is no longer hot. */
+    public void remove(String productId) {
+        long removed = mongoTemplate.remove(new Query(Criteria.where("productId").is(productId)), StockStripe.class)
+                .getDeletedCount();
+        if (!isHot(productId) && removed == 0) return;
+        refresh();
+        redisTemplate.convertAndSend(CHANNEL, productId);
+        log.info("Product {} deleted, {} stock stripes dropped", productId, removed);
+    }
+
+    private void enable(String productId, int stripes) {
+        // the flip and the stock read are one atomic step: the product-document path stops deducting from here
+        Product before = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(productId).and("stockStripes").exists(false)),
+                new Update().set("stockStripes", stripes).inc("version", 1),
+                Product.class);
+        if (before == null) throw new ResourceNotFoundException("Product not found: " + productId);
+
+        // holds taken before the flip stay on the product document; $inc commutes with their settles
+        int held = before.getReservedQuantity() == null ? 0 : before.getReservedQuantity();
+        if (held != 0) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(productId)),
+                    new Update().inc("heldOffStripes", held), Product.class);
+        }
+
+        int stock = before.getStockQuantity() == null ? 0 : before.getStockQuantity();
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockStripe.class);
+        for (int i = 0; i < stripes; i++) {
+            int share = stock / stripes + (i < stock % stripes ? 1 : 0);
+            ops.upsert(new Query(Criteria.where("_id").is(stripeId(productId, i))),
+                    new Update().inc("qty", share).inc("reserved", 0)
+                            .setOnInsert("productId", productId).setOnInsert("stripe", i));
+        }
+        ops.execute();
+        stripesExist = true;
+        log.info("Product {} striped over {} stock documents ({} units)", productId, stripes, stock);
+    }
+
+    private void disable(String productId) {
+        // available stock restarts at 0 on the product document and the stripes are folded into it;
+        // holds kept from before hot mode become plain product-document holds again
+        Product before = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(productId).and("stockStripes").exists(true)),
+                new Update().unset("stockStripes").set("stockQuantity", 0).set("reservedQuantity", 0)
+                        .unset("heldOffStripes").unset("stripeCredit").inc("version", 1),
+                Product.class);
+        if (before == null) return;
+        int credit = before.getStripeCredit() == null ? 0 : before.getStripeCredit();
+        int held = before.getHeldOffStripes() == null ? 0 : before.getHeldOffStripes();
+        if (credit != 0 || held != 0) {
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(productId)),
+                    new Update().inc("stockQuantity", credit).inc("reservedQuantity", held), Product.class);
+        }
+        int folded = fold(productId);
+        log.info("Product {} back to a single stock document ({} units folded)", productId, folded);
+    }
+
+    /**
+     * Admin stock edit of a hot product: the stripes' total becomes {@code target} by adding the
+     * difference to stripe 0, or taking it from the fullest stripes. Units sold meanwhile stay sold,
+     * so the total may end up below {@code target}, never above it.
+     */
+    public void setAvailable(String productId, int target) {
+        Product p = mongoTemplate.findOne(new Query(Criteria.where("_id").is(productId)), Product.class);
+        if (p != null) moveCredit(productId, p.getStripeCredit());
+        int delta = target - available(productId);
+        if (delta > 0) {
+            mongoTemplate.upsert(new Query(Criteria.where("_id").is(stripeId(productId, 0))),
+                    new Update().inc("qty", delta).setOnInsert("productId", productId).setOnInsert("stripe", 0),
+                    StockStripe.class);
+        } else if (delta < 0) {
+            int need = -delta;
+            Query q = new Query(Criteria.where("productId").is(productId).and("qty").gt(0))
+                    .with(Sort.by(Sort.Direction.DESC, "qty"));
+            for (StockStripe s : mongoTemplate.find(q, StockStripe.class)) {
+                int part = Math.min(need, s.getQty());
+                long taken = mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(s.getId()).and("qty").gte(part)),
+                        new Update().inc("qty", -part), StockStripe.class).getModifiedCount();
+                if (taken > 0) need -= part;
+                if (need == 0) break;
+            }
+        }
+        log.info("Product {} stock set to {} across its stripes ({} applied)", productId, target, delta);
+    }
+
+    /* ========= Checkout ========= */
+
+    /**
+     * Takes {@code qty} of a hot product for the given journal entry: from one stripe if any has
+     * enough (a random stripe, then its siblings in order), otherwise spread over several. Returns
+     * false, with nothing taken, if all stripes together fall short.
+     */
+    public boolean tryDeduct(String journalId, String productId, int stripes, int qty) {
+        int n = Math.max(1, stripes);
+        deductions.increment();
+        int start = ThreadLocalRandom.current().nextInt(n);
+        for (int k = 0; k < n; k++) {
+            if (k == 1) siblingFallbacks.increment();
+            if (take(journalId, stripeId(productId, (start + k) % n), qty)) {
+                stripesExist = true; // settles of this entry must look at stripes
+                return true;
+            }
+        }
+        if (n > 1 && takeSpread(journalId, productId, qty)) {
+            splitLines.increment();
+            return true;
+        }
+        shortages.increment();
+        return false;
+    }
+
+    /** Units left to sell across the product's stripes. */
+    public int available(String productId) {
+        Query q = new Query(Criteria.where("productId").is(productId));
+        q.fields().include("qty");
+        return mongoTemplate.find(q, StockStripe.class).stream().mapToInt(StockStripe::getQty).sum();
+    }
+
+    private boolean take(String journalId, String stripeId, int qty) {
+        Query q = new Query(Criteria.where("_id").is(stripeId).and("qty").gte(qty).and("holds").ne(journalId));
+        Update u = new Update().inc("qty", -qty).inc("reserved", qty)
+                .push("holds", journalId).set("held." + journalId, qty);
+        return mongoTemplate.updateFirst(q, u, StockStripe.class).getModifiedCount() > 0;
+    }
+
+    // fullest stripes first; a stripe that sold meanwhile is skipped, and if the parts don't add up they go back
+    private boolean takeSpread(String journalId, String productId, int qty) {
+        Query q = new Query(Criteria.where("productId").is(productId).and("qty").gt(0))
+                .with(Sort.by(Sort.Direction.DESC, "qty"));
+        q.fields().include("qty");
+        List<StockStripe> candidates = mongoTemplate.find(q, StockStripe.class);
+        if (candidates.stream().mapToInt(StockStripe::getQty).sum() < qty) return false;
+
+        stripesExist = true;
+        int need = qty;
+        for (StockStripe s : candidates) {
+            int part = Math.min(need, s.getQty());
+            if (take(journalId, s.getId(), part)) need -= part;
+            if (need == 0) return true;
+        }
+        settle(journalId, List.of(new StockJournal.Line(productId, qty)), true);
+        return false;
+    }
+
+    /** Gives back whatever the journal entry still holds on stripes. */
+    public void restore(String journalId, List<StockJournal.Line> items) {
+        settle(journalId, items, true);
+    }
+
+    /** Reserved qty held by the journal entry on stripes becomes sold. */
+    public void commit(String journalId, List<StockJournal.Line> items) {
+        settle(journalId, items, false);
+    }
+
+    // every stripe holding the entry gives up its own part; only stripes still holding it are touched
+    private void settle(String journalId, List<StockJournal.Line> items, boolean restock) {
+        Map<String, Integer> lineQty = new HashMap<>();
+        for (StockJournal.Line l : items) lineQty.merge(l.getProductId(), l.getQty(), Integer::sum);
+        List<StockStripe> holding = mongoTemplate.find(new Query(
+                Criteria.where("productId").in(lineQty.keySet()).and("holds").is(journalId)), StockStripe.class);
+        if (holding.isEmpty()) return;
+
+        BulkOperations ops = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockStripe.class);
+        for (StockStripe s : holding) {
+            Integer part = s.getHeld() == null ? null : s.getHeld().get(journalId);
+            int qty = part != null ? part : lineQty.get(s.getProductId()); // held before lines could span stripes
+            Update u = new Update().inc("reserved", -qty).pull("holds", journalId).unset("held." + journalId);
+            if (restock) u.inc("qty", qty);
+            ops.updateOne(new Query(Criteria.where("_id").is(s.getId()).and("holds").is(journalId)), u);
+        }
+        ops.execute();
+    }
+
+    /* ========= Reconciliation ========= */
+
+    /**
+     * Folds stripe totals into the product documents for display, and moves stock that came back to
+     * stripes of products no longer hot (late restores) onto the product document.
+     */
+    @Scheduled(fixedDelayString = "${stock.stripes.reconcile-ms:1000}")
+    public void reconcile() {
+        if (!stripesExist) return;
+        Aggregation agg = Aggregation.newAggregation(
+                Aggregation.group("productId").sum("qty").as("qty").sum("reserved").as("reserved")
+                        .sum(ArrayOperators.Size.lengthOfArray(
+                                ConditionalOperators.ifNull("holds").then(Collections.emptyList()))).as("holds"));
+        boolean any = false;
+        Map<String, Integer> stock = new HashMap<>();
+        List<String> changed = new ArrayList<>();
+        Map<String, Product> offStripes = offStripes();
+        for (Document d : mongoTemplate.aggregate(agg, StockStripe.class, Document.class)) {
+            any = true;
+            String productId = d.getString("_id");
+            int qty = d.get("qty", Number.class).intValue();
+            int reserved = d.get("reserved", Number.class).intValue();
+
+            if (isHot(productId)) {
+                Product p = offStripes.get(productId);
+                if (p != null) {
+                    qty += moveCredit(productId, p.getStripeCredit());
+                    reserved += p.getHeldOffStripes() == null ? 0 : p.getHeldOffStripes();
+                }
+                Query q = new Query(new Criteria().andOperator(
+                        Criteria.where("_id").is(productId),
+                        Criteria.where("stockStripes").exists(true),
+                        new Criteria().orOperator(Criteria.where("stockQuantity").ne(qty),
+                                Criteria.where("reservedQuantity").ne(reserved))));
+                Update u = new Update().set("stockQuantity", qty).set("reservedQuantity", reserved).inc("version", 1);
+                if (mongoTemplate.updateFirst(q, u, Product.class).getModifiedCount() > 0) {
+                    changed.add(productId);
+                    stock.put(productId, qty);
+                }
+            } else if (qty > 0) {
+                if (fold(productId) > 0) changed.add(productId);
+            } else if (reserved == 0 && d.get("holds", Number.class).intValue() == 0) {
+                mongoTemplate.remove(new Query(Criteria.where("productId").is(productId)
+                        .and("qty").is(0).and("reserved").is(0)), StockStripe.class);
+            }
+        }
+        stripesExist = any || !hot.isEmpty();
+        if (!changed.isEmpty()) productCache.invalidateAll(changed);
+        if (indexSync.stockChanged(stock)) catalogVersion.bump();
+    }
+
+    // hot products with holds or credit left on the product document
+    private Map<String, Product> offStripes() {
+        if (hot.isEmpty()) return Map.of();
+        Query q = new Query(Criteria.where("_id").in(hot.keySet()).orOperator(
+                Criteria.where("heldOffStripes").ne(null), Criteria.where("stripeCredit").ne(null)));
+        q.fields().include("heldOffStripes").include("stripeCredit");
+        Map<String, Product> out = new HashMap<>();
+        for (Product p : mongoTemplate.find(q, Product.class)) out.put(p.getId(), p);
+        return out;
+    }
+
+    // qty restored by pre-hot holds goes onto stripe 0; $inc by what was read, so later credits stay
+    private int moveCredit(String productId, Integer credit) {
+        if (credit == null || credit <= 0) return 0;
+        long taken = mongoTemplate.updateFirst(
+                new Query(Criteria.where("_id").is(productId).and("stockStripes").exists(true).and("stripeCredit").gte(credit)),
+                new Update().inc("stripeCredit", -credit), Product.class).getModifiedCount();
+        if (taken == 0) return 0;
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(stripeId(productId, 0))),
+                new Update().inc("qty", credit).setOnInsert("productId", productId).setOnInsert("stripe", 0),
+                StockStripe.class);
+        return credit;
+    }
+
+    // moves the stripes' available qty onto the product document, as long as the product is not hot
+    private int fold(String productId) {
+        int total = 0;
+        for (StockStripe s : mongoTemplate.find(new Query(Criteria.where("productId").is(productId)), StockStripe.class)) {
+            StockStripe before = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(s.getId()).and("qty").gt(0)),
+                    new Update().set("qty", 0), FindAndModifyOptions.options().returnNew(false), StockStripe.class);
+            if (before != null) total += before.getQty();
+        }
+        if (total == 0) return 0;
+
+        Product after = mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(productId).and("stockStripes").exists(false)),
+                new Update().inc("stockQuantity", total).inc("version", 1),
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (after == null) {
+            if (!mongoTemplate.exists(new Query(Criteria.where("_id").is(productId)), Product.class)) {
+                // deleted (stripes re-created by a late restore): nothing to fold into
+                mongoTemplate.remove(new Query(Criteria.where("productId").is(productId)), StockStripe.class);
+                return 0;
+            }
+            // turned hot again meanwhile: the qty stays on the stripes
+            mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(stripeId(productId, 0))),
+                    new Update().inc("qty", total), StockStripe.class);
+            return 0;
+        }
+        productCache.invalidate(productId);
+        if (indexSync.stockChanged(productId, after.getStockQuantity())) catalogVersion.bump();
+        return total;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("hotProducts", hot.size());
+        out.put("deductions", deductions.sum());
+        out.put("siblingFallbacks", siblingFallbacks.sum());
+        out.put("splitLines", splitLines.sum());
+        out.put("shortages", shortages.sum());
+        return out;
+    }
+
+    static String stripeId(String productId, int stripe) {
+        return productId + "#" + stripe;
+    }
+}
@@ -10,6 +10,10 @@ import com.quickbee.backend.repository.UserRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
@@ -26,6 +30,15 @@ public class UserService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private PartnerGeoIndex partnerGeoIndex;
+
+    @Autowired
+    private PartnerLocationService partnerLocations;
+
     public User registerUser(SignUpRequest signUpRequest) {
 
         if (userRepository.existsByEmail(signUpRequest.getEmail())) {
@@ -74,6 +87,10 @@ public class UserService {
         partner.setOnline(true);
         partner.setPartnerStatus(PartnerStatus.AVAILABLE);
         userRepository.save(partner);
+        // the last heartbeat is fresher than the persisted position
+        partnerLocations.lastKnown(partnerId).ifPresentOrElse(
+                p -> partnerGeoIndex.put(partnerId, p.lat(), p.lng()),
+                () -> partnerGeoIndex.put(partnerId, partner.getCurrentLat(), partner.getCurrentLng()));
         log.info("Partner {} freed and set to AVAILABLE", partnerId);
     }
     /**
@@ -89,9 +106,26 @@ public class UserService {
         partner.setOnline(false);
         partner.setPartnerStatus(PartnerStatus.ON_DELIVERY);
         userRepository.save(partner);
+        partnerGeoIndex.remove(partnerId);
         log.info("Partner {} marked as ON_DELIVERY (busy)", partnerId);
     }
 
+    /**
+     * Atomically takes an available partner for one order: online=false, partnerStatus=ON_DELIVERY,
+     * only if they are still online and AVAILABLE. Returns false if someone else got them first.
+     */
+    public boolean claimAvailablePartner(String partnerId) {
+        Query q = new Query(Criteria.where("_id").is(partnerId)
+                .and("online").is(true)
+                .and("partnerStatus").is(PartnerStatus.AVAILABLE));
+        Update u = new Update()
+                .set("online", false)
+                .set("partnerStatus", PartnerStatus.ON_DELIVERY);
+        boolean claimed = mongoTemplate.updateFirst(q, u, User.class).getModifiedCount() == 1;
+        partnerGeoIndex.remove(partnerId); // busy now, or a stale entry
+        return claimed;
+    }
+
     /**
      * Find partners currently online & available (simple pool).
      * Optionally you can add location filtering here.
@@ -108,5 +142,6 @@ public class UserService {
         p.setOnline(false);
         p.setPartnerStatus(PartnerStatus.ACTIVE);
         userRepository.save(p);
+        partnerGeoIndex.remove(partnerId);
     }
 }
\ No newline at end of file
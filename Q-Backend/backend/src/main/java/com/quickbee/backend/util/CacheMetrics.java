@@ -0,0 +1,24 @@
+package com.quickbee.backend.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Common JSON shape for the in-process cache counters reported by /api/admin/cache-stats
+public final class CacheMetrics {
+
+    private CacheMetrics() {}
+
+    public static Map<String, Object> snapshot(Cache<?, ?> cache) {
+        CacheStats s = cache.stats();
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("size", cache.estimatedSize());
+        out.put("hits", s.hitCount());
+        out.put("misses", s.missCount());
+        out.put("evictions", s.evictionCount());
+        out.put("hitRate", s.hitRate());
+        return out;
+    }
+}
@@ -0,0 +1,199 @@
+package com.quickbee.backend.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel for large numbers of coarse timeouts (the Varghese & Lauck scheme, as in
+ * Netty's timer). Schedule and cancel are O(1): schedule only enqueues and one worker thread moves
+ * new entries into their bucket once per tick; cancel only flips the entry's state, and the entry
+ * is unlinked the next time the worker walks its bucket (within one turn of the wheel). Deadlines
+ * are rounded up to the tick; each tick only walks its own bucket. Expired tasks are handed to {@code executor}, so a
+ * slow task never delays the wheel.
+ */
+public class HashedWheelTimer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    /** Handle of a scheduled task. */
+    public interface Timeout {
+        /** Returns true if this call stopped the task from running. */
+        boolean cancel();
+    }
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor executor;
+    private final Queue<Entry> added = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    private long tick; // worker thread only
+
+    /**
+     * @param wheelSize buckets, rounded up to a power of two; deadlines further out than
+     *                  {@code tick * wheelSize} wait for extra rounds in their bucket
+     */
+    public HashedWheelTimer(String name, long tick, TimeUnit unit, int wheelSize, Executor executor) {
+        if (tick <= 0 || wheelSize <= 0) throw new IllegalArgumentException("tick and wheelSize must be positive");
+        this.tickNanos = unit.toNanos(tick);
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) wheel[i] = new Bucket();
+        this.mask = size - 1;
+        this.executor = executor;
+        this.worker = new Thread(this::runWheel, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        if (!running) throw new IllegalStateException("Timer is stopped");
+        Entry e = new Entry(task, System.nanoTime() - startNanos + unit.toNanos(Math.max(0, delay)));
+        pending.incrementAndGet();
+        added.add(e);
+        return e;
+    }
+
+    /** Tasks scheduled and neither run nor cancelled yet. */
+    public int pending() {
+        return pending.get();
+    }
+
+    /** Stops the wheel and returns the tasks that had not run; they never will. */
+    public List<Runnable> stop() {
+        running = false;
+        LockSupport.unpark(worker);
+        try {
+            worker.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        List<Runnable> unrun = new ArrayList<>();
+        for (Bucket b : wheel) {
+            for (Entry e = b.head; e != null; e = e.next) {
+                if (e.cancel()) unrun.add(e.task);
+            }
+        }
+        for (Entry e; (e = added.poll()) != null; ) {
+            if (e.cancel()) unrun.add(e.task);
+        }
+        return unrun;
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /* ========= Worker ========= */
+
+    private void runWheel() {
+        while (running) {
+            long deadline = tickNanos * (tick + 1);
+            long sleep = deadline - (System.nanoTime() - startNanos);
+            if (sleep > 0) {
+                LockSupport.parkNanos(this, sleep);
+                continue; // re-check time and running
+            }
+            transferAdded();
+            wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    private void transferAdded() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Entry e = added.poll();
+            if (e == null) return;
+            if (e.state != Entry.WAITING) continue;
+            long due = e.deadline / tickNanos;
+            e.rounds = (due - tick) / wheel.length;
+            wheel[(int) (Math.max(due, tick) & mask)].add(e); // already late: fire on this tick
+        }
+    }
+
+    private final class Entry implements Timeout {
+        static final int WAITING = 0, CANCELLED = 1, EXPIRED = 2;
+        static final AtomicIntegerFieldUpdater<Entry> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "state");
+
+        final Runnable task;
+        final long deadline; // nanos since start
+        volatile int state = WAITING;
+        long rounds;
+        Entry prev, next;
+
+        Entry(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, WAITING, CANCELLED)) return false;
+            pending.decrementAndGet(); // unlinked when the worker next walks its bucket
+            return true;
+        }
+
+        void expire() {
+            if (!STATE.compareAndSet(this, WAITING, EXPIRED)) return;
+            pending.decrementAndGet();
+            try {
+                executor.execute(task);
+            } catch (RuntimeException ex) {
+                log.error("Timer task rejected: {}", ex.getMessage());
+            }
+        }
+    }
+
+    // doubly linked, touched by the worker only
+    private static final class Bucket {
+        Entry head, tail;
+
+        void add(Entry e) {
+            if (head == null) {
+                head = tail = e;
+            } else {
+                tail.next = e;
+                e.prev = tail;
+                tail = e;
+            }
+        }
+
+        void remove(Entry e) {
+            if (e.prev != null) e.prev.next = e.next; else head = e.next;
+            if (e.next != null) e.next.prev = e.prev; else tail = e.prev;
+            e.prev = e.next = null;
+        }
+
+        void expire() {
+            Entry e = head;
+            while (e != null) {
+                Entry next = e.next;
+                if (e.state == Entry.CANCELLED) {
+                    remove(e);
+                } else if (e.rounds <= 0) {
+                    remove(e);
+                    e.expire();
+                } else {
+                    e.rounds--;
+                }
+                e = next;
+            }
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.quickbee.backend.util;
 
+import com.quickbee.backend.model.enums.Role;
+import com.quickbee.backend.security.AuthenticatedUser;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -20,15 +23,24 @@ public class JwtUtil {
 
     private final String SECRET_KEY;
     private final SecretKey key;
+    private final JwtParser parser; // immutable + thread-safe, built once
+    private final VerifiedTokenCache tokenCache;
 
     private static final long JWT_TOKEN_VALIDITY = 10 * 60 * 60 * 1000; // 10 hours
 
+    // custom claims carried next to the subject (email)
+    public static final String CLAIM_USER_ID = "uid";
+    public static final String CLAIM_ROLE = "role";
+
     // This constructor fixes the NullPointerException
     @Autowired
-    public JwtUtil(@Value("${jwt.secret}") String secretKey) {
+    public JwtUtil(@Value("${jwt.secret}") String secretKey,
+                   @Value("${jwt.cache.max-size:50000}") long tokenCacheMaxSize) {
         // This debug line proves your .env is loading.
         this.SECRET_KEY = secretKey;
         this.key = Keys.hmacShaKeyFor(this.SECRET_KEY.getBytes());
+        this.parser = Jwts.parser().verifyWith(key).build();
+        this.tokenCache = new VerifiedTokenCache(tokenCacheMaxSize);
     }
 
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
@@ -44,6 +56,18 @@ public class JwtUtil {
         return extractClaim(token, Claims::getExpiration);
     }
 
+    /**
+     * Verifies the token once and builds the principal from its claims.
+     * Returns null for legacy tokens that were issued without uid/role.
+     */
+    public AuthenticatedUser extractAuthenticatedUser(String token) {
+        Claims claims = extractAllClaims(token); // throws ExpiredJwtException when past exp
+        String userId = claims.get(CLAIM_USER_ID, String.class);
+        String role = claims.get(CLAIM_ROLE, String.class);
+        if (userId == null || role == null) return null;
+        return new AuthenticatedUser(userId, claims.getSubject(), null, Role.valueOf(role), null);
+    }
+
     private Boolean isTokenExpired(String token) {
         return extractExpiration(token).before(new Date());
     }
@@ -55,6 +79,10 @@ public class JwtUtil {
 
     public String generateToken(UserDetails userDetails) {
         Map<String, Object> claims = new HashMap<>();
+        if (userDetails instanceof AuthenticatedUser user) {
+            claims.put(CLAIM_USER_ID, user.getId());
+            claims.put(CLAIM_ROLE, user.getRole().name());
+        }
         return createToken(claims, userDetails.getUsername());
     }
 
@@ -68,11 +96,17 @@ public class JwtUtil {
                 .compact();
     }
 
+    /** hit / miss / eviction counters of the verified-token cache */
+    public Map<String, Object> getTokenCacheStats() {
+        return tokenCache.stats();
+    }
+
+    // Signature is verified once per token; later calls are served from the cache until exp
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return tokenCache.get(token, this::parseAndVerify);
+    }
+
+    private Claims parseAndVerify(String token) {
+        return parser.parseSignedClaims(token).getPayload();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package com.quickbee.backend.util;
+
+import java.io.*;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque continuation token for keyset pagination: a typed tuple (usually sort key + _id),
+ * serialized and Base64URL-encoded. Clients must pass it back unchanged.
+ */
+public final class KeysetCursor {
+
+    private KeysetCursor() {}
+
+    public static String encode(Object... values) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(values.length);
+            for (Object v : values) {
+                if (v == null) {
+                    out.writeByte('n');
+                } else if (v instanceof String s) {
+                    out.writeByte('s'); out.writeUTF(s);
+                } else if (v instanceof Double d) {
+                    out.writeByte('d'); out.writeDouble(d);
+                } else if (v instanceof Integer i) {
+                    out.writeByte('i'); out.writeInt(i);
+                } else if (v instanceof Long l) {
+                    out.writeByte('l'); out.writeLong(l);
+                } else if (v instanceof Instant t) {
+                    out.writeByte('t'); out.writeLong(t.toEpochMilli());
+                } else {
+                    throw new IllegalArgumentException("Unsupported cursor value: " + v.getClass());
+                }
+            }
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static List<Object> decode(String cursor) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(Base64.getUrlDecoder().decode(cursor)));
+            int n = in.readByte();
+            List<Object> values = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                char type = (char) in.readByte();
+                values.add(switch (type) {
+                    case 'n' -> null;
+                    case 's' -> in.readUTF();
+                    case 'd' -> in.readDouble();
+                    case 'i' -> in.readInt();
+                    case 'l' -> in.readLong();
+                    case 't' -> Instant.ofEpochMilli(in.readLong());
+                    default -> throw new IllegalArgumentException("Invalid cursor");
+                });
+            }
+            return values;
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
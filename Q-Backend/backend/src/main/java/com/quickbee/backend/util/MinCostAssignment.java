@@ -0,0 +1,110 @@
+package com.quickbee.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * Min-cost bipartite assignment (Hungarian algorithm, shortest augmenting paths with potentials).
+ *
+ * For an n x m cost matrix every row of the smaller side is matched to a distinct column, at minimum
+ * total cost, in O(n^2 m) time and O(n + m) extra memory. Pairs that must not be matched get a cost
+ * of {@link #FORBIDDEN}; the solver then first maximises the number of allowed pairs and reports the
+ * rest as unmatched (-1).
+ */
+public final class MinCostAssignment {
+
+    /** Cost of a pair that must not be matched. Keep real costs far below it. */
+    public static final double FORBIDDEN = 1e9;
+
+    private MinCostAssignment() {}
+
+    /** Column matched to each row, or -1 where the row is unmatched (or only matchable via a forbidden pair). */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        int cols = rows == 0 ? 0 : cost[0].length;
+        int[] result = new int[rows];
+        Arrays.fill(result, -1);
+        if (rows == 0 || cols == 0) return result;
+
+        if (rows <= cols) {
+            int[] colOfRow = hungarian(rows, cols, (i, j) -> cost[i][j]);
+            for (int i = 0; i < rows; i++) {
+                if (cost[i][colOfRow[i]] < FORBIDDEN) result[i] = colOfRow[i];
+            }
+        } else {
+            int[] rowOfCol = hungarian(cols, rows, (i, j) -> cost[j][i]); // transposed: columns pick rows
+            for (int j = 0; j < cols; j++) {
+                int i = rowOfCol[j];
+                if (cost[i][j] < FORBIDDEN) result[i] = j;
+            }
+        }
+        return result;
+    }
+
+    /** Total cost of an assignment returned by {@link #solve}, skipping unmatched rows. */
+    public static double totalCost(double[][] cost, int[] assignment) {
+        double total = 0;
+        for (int i = 0; i < assignment.length; i++) {
+            if (assignment[i] >= 0) total += cost[i][assignment[i]];
+        }
+        return total;
+    }
+
+    private interface Cost {
+        double at(int row, int col);
+    }
+
+    // n <= m; returns the column of each of the n rows. 1-based internally, index 0 is the virtual root.
+    private static int[] hungarian(int n, int m, Cost a) {
+        double[] u = new double[n + 1];
+        double[] v = new double[m + 1];
+        int[] p = new int[m + 1];   // row matched to column j
+        int[] way = new int[m + 1]; // previous column on the augmenting path
+        double[] minv = new double[m + 1];
+        boolean[] used = new boolean[m + 1];
+
+        for (int i = 1; i <= n; i++) {
+            p[0] = i;
+            int j0 = 0;
+            Arrays.fill(minv, Double.POSITIVE_INFINITY);
+            Arrays.fill(used, false);
+            do {
+                used[j0] = true;
+                int i0 = p[j0];
+                double delta = Double.POSITIVE_INFINITY;
+                int j1 = 0;
+                for (int j = 1; j <= m; j++) {
+                    if (used[j]) continue;
+                    double cur = a.at(i0 - 1, j - 1) - u[i0] - v[j];
+                    if (cur < minv[j]) {
+                        minv[j] = cur;
+                        way[j] = j0;
+                    }
+                    if (minv[j] < delta) {
+                        delta = minv[j];
+                        j1 = j;
+                    }
+                }
+                for (int j = 0; j <= m; j++) {
+                    if (used[j]) {
+                        u[p[j]] += delta;
+                        v[j] -= delta;
+                    } else {
+                        minv[j] -= delta;
+                    }
+                }
+                j0 = j1;
+            } while (p[j0] != 0);
+            do {
+                int j1 = way[j0];
+                p[j0] = p[j1];
+                j0 = j1;
+            } while (j0 != 0);
+        }
+
+        int[] colOfRow = new int[n];
+        for (int j = 1; j <= m; j++) {
+            if (p[j] != 0) colOfRow[p[j] - 1] = j - 1;
+        }
+        return colOfRow;
+    }
+}
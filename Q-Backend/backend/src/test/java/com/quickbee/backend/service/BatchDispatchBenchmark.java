@@ -0,0 +1,196 @@
+package com.quickbee.backend.service;
+
+import com.quickbee.backend.util.MinCostAssignment;
+
+import java.util.*;
+
+/**
+ * Batch dispatch: solver time on 1k x 1k matrices, and a simulated dinner peak comparing the matching
+ * against the greedy strategies it replaces. Pure in-memory, no Mongo/Redis.
+ *
+ * Not a unit test (surefire skips it). Run with the test classpath, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test
+ *  -Dexec.mainClass=com.quickbee.backend.service.BatchDispatchBenchmark}
+ * Env: BENCH_SIZE (1000), BENCH_ROUNDS (90), BENCH_SEED (42).
+ *
+ * Simulation: a 12 x 12 km city, one round per minute (the batch interval, scaled up). Each round
+ * ORDERS_PER_ROUND orders arrive and PARTNERS_PER_ROUND partners become free at random points; the
+ * queue builds up because demand exceeds supply. Strategies:
+ *  fifo     - as {@code tryAssignToPartner}: each free partner, in turn, takes the oldest queued order
+ *  nearest  - as {@code dispatch}: each order, oldest first, takes the nearest free partner in range
+ *  batch    - {@link BatchDispatchService}'s cost over 20 nearest candidates, solved by {@link MinCostAssignment}
+ */
+public class BatchDispatchBenchmark {
+
+    private static final double CITY_KM = 12;
+    private static final double MAX_RADIUS_KM = 16;
+    private static final int CANDIDATES = 20;
+    private static final int ORDERS_PER_ROUND = 60;
+    private static final int PARTNERS_PER_ROUND = 55;
+    private static final double AGE_WEIGHT = 0.5;
+    private static final double RETRY_WEIGHT = 2;
+
+    record Point(double x, double y) {
+        double km(Point o) { return Math.hypot(x - o.x, y - o.y); }
+    }
+
+    record Job(Point at, int arrived) {}
+
+    interface Strategy {
+        // returns partner index for each order index, or -1
+        int[] match(List<Job> orders, List<Point> partners, int round);
+    }
+
+    public static void main(String[] args) {
+        int size = Integer.parseInt(System.getenv().getOrDefault("BENCH_SIZE", "1000"));
+        int rounds = Integer.parseInt(System.getenv().getOrDefault("BENCH_ROUNDS", "90"));
+        long seed = Long.parseLong(System.getenv().getOrDefault("BENCH_SEED", "42"));
+
+        solverTimes(size, seed);
+
+        System.out.printf("%nsimulated peak: %d rounds, %d orders and %d partners per round%n",
+                rounds, ORDERS_PER_ROUND, PARTNERS_PER_ROUND);
+        System.out.println("strategy   served   avg trip km   p95 trip km   avg wait min   max wait min   queued at end");
+        simulate("fifo", BatchDispatchBenchmark::fifo, rounds, seed);
+        simulate("nearest", BatchDispatchBenchmark::nearest, rounds, seed);
+        simulate("batch", BatchDispatchBenchmark::batch, rounds, seed);
+    }
+
+    /* ========= Solver ========= */
+
+    private static void solverTimes(int n, long seed) {
+        Random rnd = new Random(seed);
+        System.out.printf("solver, %d x %d (ms per solve, after warm-up)%n", n, n);
+        for (String kind : new String[]{"dense", "sparse-20"}) {
+            for (int warm = 0; warm < 2; warm++) MinCostAssignment.solve(matrix(kind, n, rnd));
+            int runs = 5;
+            long total = 0;
+            for (int r = 0; r < runs; r++) {
+                double[][] m = matrix(kind, n, rnd);
+                long t0 = System.nanoTime();
+                MinCostAssignment.solve(m);
+                total += System.nanoTime() - t0;
+            }
+            System.out.printf("  %-10s %8.1f%n", kind, total / 1e6 / runs);
+        }
+    }
+
+    // dense: every pair allowed; sparse: each row only has CANDIDATES allowed columns, as in batch dispatch
+    private static double[][] matrix(String kind, int n, Random rnd) {
+        List<Point> orders = randomPoints(n, rnd);
+        List<Point> partners = randomPoints(n, rnd);
+        double[][] m = new double[n][n];
+        for (int i = 0; i < n; i++) {
+            if (kind.equals("dense")) {
+                for (int j = 0; j < n; j++) m[i][j] = orders.get(i).km(partners.get(j));
+            } else {
+                Arrays.fill(m[i], MinCostAssignment.FORBIDDEN);
+                for (int j : nearestOf(orders.get(i), partners, CANDIDATES)) m[i][j] = orders.get(i).km(partners.get(j));
+            }
+        }
+        return m;
+    }
+
+    /* ========= Simulation ========= */
+
+    private static void simulate(String name, Strategy strategy, int rounds, long seed) {
+        Random rnd = new Random(seed); // same demand and supply for every strategy
+        List<Job> queue = new ArrayList<>();
+        List<Point> free = new ArrayList<>();
+        List<Double> trips = new ArrayList<>();
+        List<Integer> waits = new ArrayList<>();
+
+        for (int round = 0; round < rounds; round++) {
+            for (Point p : randomPoints(ORDERS_PER_ROUND, rnd)) queue.add(new Job(p, round));
+            free.addAll(randomPoints(PARTNERS_PER_ROUND, rnd));
+
+            int[] match = strategy.match(queue, free, round);
+            boolean[] busy = new boolean[free.size()];
+            List<Job> left = new ArrayList<>();
+            for (int i = 0; i < queue.size(); i++) {
+                int j = match[i];
+                if (j < 0) {
+                    left.add(queue.get(i));
+                    continue;
+                }
+                busy[j] = true;
+                trips.add(queue.get(i).at().km(free.get(j)));
+                waits.add(round - queue.get(i).arrived());
+            }
+            List<Point> stillFree = new ArrayList<>();
+            for (int j = 0; j < free.size(); j++) if (!busy[j]) stillFree.add(free.get(j)); // they wait where they are
+            queue = left;
+            free = stillFree;
+        }
+
+        Collections.sort(trips);
+        double avgTrip = trips.stream().mapToDouble(Double::doubleValue).average().orElse(0);
+        double p95 = trips.isEmpty() ? 0 : trips.get((int) (trips.size() * 0.95));
+        double avgWait = waits.stream().mapToInt(Integer::intValue).average().orElse(0);
+        int maxWait = waits.stream().mapToInt(Integer::intValue).max().orElse(0);
+        for (Job j : queue) maxWait = Math.max(maxWait, rounds - j.arrived()); // still waiting counts too
+        System.out.printf("%-8s %8d   %11.2f   %11.2f   %12.2f   %12d   %13d%n",
+                name, trips.size(), avgTrip, p95, avgWait, maxWait, queue.size());
+    }
+
+    private static int[] fifo(List<Job> orders, List<Point> partners, int round) {
+        int[] match = new int[orders.size()];
+        Arrays.fill(match, -1);
+        for (int i = 0; i < Math.min(orders.size(), partners.size()); i++) match[i] = i; // queue is oldest first
+        return match;
+    }
+
+    private static int[] nearest(List<Job> orders, List<Point> partners, int round) {
+        int[] match = new int[orders.size()];
+        Arrays.fill(match, -1);
+        boolean[] taken = new boolean[partners.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            int best = -1;
+            double bestKm = MAX_RADIUS_KM;
+            for (int j = 0; j < partners.size(); j++) {
+                double km = orders.get(i).at().km(partners.get(j));
+                if (!taken[j] && km <= bestKm) {
+                    best = j;
+                    bestKm = km;
+                }
+            }
+            if (best >= 0) {
+                taken[best] = true;
+                match[i] = best;
+            }
+        }
+        return match;
+    }
+
+    private static int[] batch(List<Job> orders, List<Point> partners, int round) {
+        double[][] cost = new double[orders.size()][partners.size()];
+        for (int i = 0; i < orders.size(); i++) {
+            Job o = orders.get(i);
+            Arrays.fill(cost[i], MinCostAssignment.FORBIDDEN);
+            for (int j : nearestOf(o.at(), partners, CANDIDATES)) {
+                double km = o.at().km(partners.get(j));
+                if (km <= MAX_RADIUS_KM) {
+                    cost[i][j] = BatchDispatchService.cost(km, round - o.arrived(), 0, AGE_WEIGHT, RETRY_WEIGHT);
+                }
+            }
+        }
+        return MinCostAssignment.solve(cost);
+    }
+
+    /* ========= Helpers ========= */
+
+    private static List<Point> randomPoints(int n, Random rnd) {
+        List<Point> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(new Point(rnd.nextDouble() * CITY_KM, rnd.nextDouble() * CITY_KM));
+        return out;
+    }
+
+    private static int[] nearestOf(Point from, List<Point> points, int k) {
+        Integer[] idx = new Integer[points.size()];
+        for (int j = 0; j < idx.length; j++) idx[j] = j;
+        Arrays.sort(idx, Comparator.comparingDouble(j -> from.km(points.get(j))));
+        int[] out = new int[Math.min(k, idx.length)];
+        for (int j = 0; j < out.length; j++) out[j] = idx[j];
+        return out;
+    }
+}
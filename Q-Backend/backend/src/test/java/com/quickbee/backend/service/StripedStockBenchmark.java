@@ -0,0 +1,84 @@
+package com.quickbee.backend.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.quickbee.backend.model.StockJournal;
+import com.quickbee.backend.model.StockStripe;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-SKU checkout throughput against stripe count, on a real mongod.
+ *
+ * Not a unit test (surefire skips it). Run with the test classpath, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test
+ *  -Dexec.mainClass=com.quickbee.backend.service.StripedStockBenchmark}
+ * Env: BENCH_MONGO_URI (default mongodb://localhost:27017), BENCH_THREADS (64), BENCH_SECONDS (10).
+ *
+ * Every iteration is one checkout line of one unit of the same product: a stripe deduction
+ * (random stripe, sibling fallback) followed by the commit that drops the hold.
+ */
+public class StripedStockBenchmark {
+
+    private static final String PRODUCT_ID = "bench-hot-sku";
+
+    public static void main(String[] args) throws Exception {
+        String uri = System.getenv().getOrDefault("BENCH_MONGO_URI", "mongodb://localhost:27017");
+        int threads = Integer.parseInt(System.getenv().getOrDefault("BENCH_THREADS", "64"));
+        int seconds = Integer.parseInt(System.getenv().getOrDefault("BENCH_SECONDS", "10"));
+
+        try (MongoClient client = MongoClients.create(uri)) {
+            MongoTemplate mongo = new MongoTemplate(client, "quickbee_bench");
+            StripedStockService striped = new StripedStockService(mongo, null, null, null, null, null);
+
+            System.out.printf("threads=%d, %ds per run%n", threads, seconds);
+            System.out.println("stripes   checkouts/s   fallbacks/checkout");
+            for (int stripes : new int[]{1, 2, 4, 8, 16, 32}) {
+                seed(mongo, stripes);
+                long before = (long) striped.getStats().get("siblingFallbacks");
+                double rate = run(striped, stripes, threads, seconds);
+                long fallbacks = (long) striped.getStats().get("siblingFallbacks") - before;
+                System.out.printf("%7d   %11.0f   %18.3f%n", stripes, rate, fallbacks / Math.max(1.0, rate * seconds));
+            }
+            mongo.dropCollection(StockStripe.class);
+        }
+    }
+
+    // plenty of stock, evenly split
+    private static void seed(MongoTemplate mongo, int stripes) {
+        mongo.remove(new Query(Criteria.where("productId").is(PRODUCT_ID)), StockStripe.class);
+        for (int i = 0; i < stripes; i++) {
+            mongo.insert(new StockStripe(StripedStockService.stripeId(PRODUCT_ID, i), PRODUCT_ID, i,
+                    50_000_000 / stripes, 0, new ArrayList<>(), new HashMap<>()));
+        }
+    }
+
+    private static double run(StripedStockService striped, int stripes, int threads, int seconds) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        LongAdder done = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    String journalId = new ObjectId().toHexString();
+                    if (striped.tryDeduct(journalId, PRODUCT_ID, stripes, 1)) {
+                        striped.commit(journalId, List.of(new StockJournal.Line(PRODUCT_ID, 1)));
+                        done.increment();
+                    }
+                }
+            }));
+        }
+        for (Future<?> f : futures) f.get();
+        pool.shutdown();
+        return done.sum() / (double) seconds;
+    }
+}
@@ -0,0 +1,99 @@
+package com.quickbee.backend.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule/cancel cost of {@link HashedWheelTimer} against the {@code ScheduledThreadPoolExecutor}
+ * that used to hold assignment timeouts, with 100k timeouts pending (75s..20min out).
+ *
+ * Not a unit test (surefire skips it). Run with the test classpath, e.g.
+ * {@code mvn -q test-compile exec:java -Dexec.classpathScope=test
+ *  -Dexec.mainClass=com.quickbee.backend.util.HashedWheelTimerBenchmark}
+ * Env: BENCH_PENDING (100000), BENCH_OPS (2000000), BENCH_THREADS (4).
+ *
+ * Each op is one schedule plus one cancel, the lifecycle of a timeout whose partner acts in time.
+ * "executor" is Executors.newScheduledThreadPool as before (cancelled tasks stay queued until due),
+ * "executor+remove" the same with removeOnCancelPolicy.
+ */
+public class HashedWheelTimerBenchmark {
+
+    interface Timer {
+        Object schedule(long delayMs);
+        void cancel(Object handle);
+        int queued();
+        void close();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int pending = Integer.parseInt(System.getenv().getOrDefault("BENCH_PENDING", "100000"));
+        int ops = Integer.parseInt(System.getenv().getOrDefault("BENCH_OPS", "2000000"));
+        int threads = Integer.parseInt(System.getenv().getOrDefault("BENCH_THREADS", "4"));
+
+        System.out.printf("pending=%d, ops=%d, threads=%d%n", pending, ops, threads);
+        System.out.println("timer              fill ns/op   schedule+cancel ns/op   queued after");
+        for (int round = 0; round < 2; round++) { // first round is warm-up
+            boolean report = round == 1;
+            bench("executor", executor(false), pending, ops, threads, report);
+            bench("executor+remove", executor(true), pending, ops, threads, report);
+            bench("wheel", wheel(), pending, ops, threads, report);
+        }
+    }
+
+    private static void bench(String name, Timer timer, int pending, int ops, int threads, boolean report)
+            throws Exception {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < pending; i++) timer.schedule(randomDelay());
+        long fill = System.nanoTime() - t0;
+
+        List<Thread> workers = new ArrayList<>();
+        int perThread = ops / threads;
+        long t1 = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Thread w = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) timer.cancel(timer.schedule(randomDelay()));
+            });
+            w.start();
+            workers.add(w);
+        }
+        for (Thread w : workers) w.join();
+        long churn = System.nanoTime() - t1;
+
+        Thread.sleep(200); // let the wheel unlink what was cancelled
+        if (report) {
+            System.out.printf("%-17s  %10.0f   %21.0f   %12d%n", name,
+                    fill / (double) pending, churn / (double) (perThread * threads), timer.queued());
+        }
+        timer.close();
+    }
+
+    private static long randomDelay() {
+        return ThreadLocalRandom.current().nextLong(75_000, 1_200_000);
+    }
+
+    private static Timer executor(boolean removeOnCancel) {
+        ScheduledThreadPoolExecutor ex = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(4);
+        ex.setRemoveOnCancelPolicy(removeOnCancel);
+        return new Timer() {
+            public Object schedule(long delayMs) { return ex.schedule(() -> {}, delayMs, TimeUnit.MILLISECONDS); }
+            public void cancel(Object handle) { ((ScheduledFuture<?>) handle).cancel(false); }
+            public int queued() { return ex.getQueue().size(); }
+            public void close() { ex.shutdownNow(); }
+        };
+    }
+
+    private static Timer wheel() {
+        HashedWheelTimer wheel = new HashedWheelTimer("bench-wheel", 100, TimeUnit.MILLISECONDS, 512, Runnable::run);
+        return new Timer() {
+            public Object schedule(long delayMs) { return wheel.schedule(() -> {}, delayMs, TimeUnit.MILLISECONDS); }
+            public void cancel(Object handle) { ((HashedWheelTimer.Timeout) handle).cancel(); }
+            public int queued() { return wheel.pending(); }
+            public void close() { wheel.stop(); }
+        };
+    }
+}
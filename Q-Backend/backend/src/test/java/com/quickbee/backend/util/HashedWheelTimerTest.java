@@ -0,0 +1,93 @@
+package com.quickbee.backend.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+
+    // 8 buckets of 10 ms: anything due after 80 ms needs extra rounds
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-wheel", 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+
+    @AfterEach
+    void stop() {
+        timer.stop();
+    }
+
+    @Test
+    void firesInDeadlineOrder() throws InterruptedException {
+        long[] delays = {150, 30, 250, 90, 60};
+        List<Long> fired = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(delays.length);
+        for (long d : delays) {
+            timer.schedule(() -> {
+                fired.add(d);
+                done.countDown();
+            }, d, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(30L, 60L, 90L, 150L, 250L), fired);
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    void multiRoundDeadlineWaitsForItsRound() throws InterruptedException {
+        long delayMs = 330; // four turns of the wheel
+        long start = System.nanoTime();
+        AtomicLong firedAfter = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(1);
+        timer.schedule(() -> {
+            firedAfter.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            done.countDown();
+        }, delayMs, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(firedAfter.get() >= delayMs, "fired early: " + firedAfter.get() + " ms");
+        assertTrue(firedAfter.get() < delayMs + 1_000, "fired late: " + firedAfter.get() + " ms");
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        HashedWheelTimer.Timeout t = timer.schedule(() -> ran.set(true), 40, TimeUnit.MILLISECONDS);
+        CountDownLatch later = new CountDownLatch(1);
+        timer.schedule(later::countDown, 120, TimeUnit.MILLISECONDS);
+
+        assertTrue(t.cancel());
+        assertFalse(t.cancel(), "second cancel is a no-op");
+        assertEquals(1, timer.pending());
+
+        assertTrue(later.await(5, TimeUnit.SECONDS)); // the cancelled deadline has passed by now
+        assertFalse(ran.get());
+        assertEquals(0, timer.pending());
+    }
+
+    @Test
+    void cancelAfterRunReturnsFalse() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        HashedWheelTimer.Timeout t = timer.schedule(done::countDown, 10, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(t.cancel());
+    }
+
+    @Test
+    void stopReturnsTasksThatHadNotRun() {
+        Runnable far = () -> {};
+        timer.schedule(far, 10, TimeUnit.SECONDS);
+        timer.schedule(() -> {}, 10, TimeUnit.SECONDS).cancel();
+
+        assertEquals(List.of(far), timer.stop());
+        assertThrows(IllegalStateException.class, () -> timer.schedule(() -> {}, 1, TimeUnit.MILLISECONDS));
+    }
+}
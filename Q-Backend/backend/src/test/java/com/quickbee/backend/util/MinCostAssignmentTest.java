@@ -0,0 +1,105 @@
+package com.quickbee.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinCostAssignmentTest {
+
+    private static final double F = MinCostAssignment.FORBIDDEN;
+
+    @Test
+    void picksCheapestPerfectMatching() {
+        double[][] cost = {
+                {4, 1, 3},
+                {2, 0, 5},
+                {3, 2, 2}};
+        int[] match = MinCostAssignment.solve(cost);
+        assertArrayEquals(new int[]{1, 0, 2}, match);
+        assertEquals(5, MinCostAssignment.totalCost(cost, match), 1e-9);
+    }
+
+    @Test
+    void leavesRowsUnmatchedRatherThanUseForbiddenPairs() {
+        double[][] cost = {
+                {1, F},
+                {F, F},
+                {2, F}};
+        int[] match = MinCostAssignment.solve(cost);
+        assertArrayEquals(new int[]{0, -1, -1}, match);
+    }
+
+    @Test
+    void moreRowsThanColumns() {
+        double[][] cost = {
+                {5, 9},
+                {1, 8},
+                {2, 1},
+                {7, 3}};
+        int[] match = MinCostAssignment.solve(cost);
+        assertArrayEquals(new int[]{-1, 0, 1, -1}, match);
+    }
+
+    @Test
+    void emptyMatrices() {
+        assertEquals(0, MinCostAssignment.solve(new double[0][0]).length);
+        assertArrayEquals(new int[]{-1, -1}, MinCostAssignment.solve(new double[2][0]));
+    }
+
+    @Test
+    void matchesBruteForceOnRandomSparseMatrices() {
+        Random rnd = new Random(7);
+        for (int run = 0; run < 2_000; run++) {
+            int rows = 1 + rnd.nextInt(6);
+            int cols = 1 + rnd.nextInt(6);
+            double[][] cost = new double[rows][cols];
+            for (double[] row : cost) {
+                for (int j = 0; j < cols; j++) {
+                    // some cells forbidden; negative costs too, as batch dispatch produces them
+                    row[j] = rnd.nextDouble() < 0.3 ? F : Math.round((rnd.nextDouble() * 20 - 5) * 100) / 100.0;
+                }
+            }
+
+            int[] match = MinCostAssignment.solve(cost);
+            assertValid(cost, match);
+            double[] best = bruteForce(cost, 0, new boolean[cols]);
+            String where = "run " + run + ": " + Arrays.deepToString(cost);
+            assertEquals(best[0], matched(match), where);
+            assertEquals(best[1], MinCostAssignment.totalCost(cost, match), 1e-6, where);
+        }
+    }
+
+    private static void assertValid(double[][] cost, int[] match) {
+        assertEquals(cost.length, match.length);
+        boolean[] used = new boolean[cost.length == 0 ? 0 : cost[0].length];
+        for (int i = 0; i < match.length; i++) {
+            if (match[i] < 0) continue;
+            assertTrue(cost[i][match[i]] < F, "forbidden pair used");
+            assertFalse(used[match[i]], "column used twice");
+            used[match[i]] = true;
+        }
+    }
+
+    private static int matched(int[] match) {
+        return (int) Arrays.stream(match).filter(j -> j >= 0).count();
+    }
+
+    // {most allowed pairs, least cost among those} over every way to match rows[from..]
+    private static double[] bruteForce(double[][] cost, int from, boolean[] used) {
+        if (from == cost.length) return new double[]{0, 0};
+        double[] best = bruteForce(cost, from + 1, used); // row left unmatched
+        for (int j = 0; j < used.length; j++) {
+            if (used[j] || cost[from][j] >= F) continue;
+            used[j] = true;
+            double[] rest = bruteForce(cost, from + 1, used);
+            used[j] = false;
+            double pairs = rest[0] + 1;
+            double total = rest[1] + cost[from][j];
+            if (pairs > best[0] || (pairs == best[0] && total < best[1])) best = new double[]{pairs, total};
+        }
+        return best;
+    }
+}
@@ -26,9 +26,11 @@ const ProductCard = ({ product, onAddToCart }) => {
           <h3 className="font-semibold text-lg text-neutral-900 dark:text-neutral-100 mb-2 line-clamp-2">
             {product.name}
           </h3>
-          <p className="text-neutral-600 dark:text-neutral-400 text-sm mb-3 line-clamp-2">
-            {product.description}
-          </p>
+          {product.description && (
+            <p className="text-neutral-600 dark:text-neutral-400 text-sm mb-3 line-clamp-2">
+              {product.description}
+            </p>
+          )}
           <div className="flex items-center justify-between mb-3">
             <div className="flex items-center space-x-1">
               <StarIcon className="h-4 w-4 text-yellow-400 fill-current" />